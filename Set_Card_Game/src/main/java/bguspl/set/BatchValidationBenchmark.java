@@ -0,0 +1,48 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Compares the throughput of the batch validator the JVM supports with the scalar one.
+ * Usage: java [--add-modules jdk.incubator.vector] -cp Set_Card_Game.jar bguspl.set.BatchValidationBenchmark
+ *        [featureCount] [featureSize]
+ */
+public class BatchValidationBenchmark {
+
+    private static final int CANDIDATES = 1 << 20;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", args.length > 0 ? args[0] : "4");
+        properties.put("FeatureSize", args.length > 1 ? args[1] : "3");
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        UtilImpl util = new UtilImpl(config);
+
+        Random random = new Random(0);
+        int[] cards = random.ints(config.featureSize * CANDIDATES, 0, config.deckSize).toArray();
+        BatchValidator scalar = util.batchValidator().scalar();
+        BatchValidator best = util.batchValidator();
+
+        boolean[] expected = new boolean[CANDIDATES];
+        boolean[] actual = new boolean[CANDIDATES];
+        double scalarRate = measure(scalar, cards, expected);
+        double bestRate = measure(best, cards, actual);
+
+        System.out.printf("scalar: %.1f M candidates/s%n", scalarRate / 1e6);
+        System.out.printf("%s: %.1f M candidates/s (x%.2f), results %s%n", best.name(), bestRate / 1e6,
+                bestRate / scalarRate, Arrays.equals(expected, actual) ? "match" : "DIFFER");
+    }
+
+    private static double measure(BatchValidator validator, int[] cards, boolean[] results) {
+        for (int round = 0; round < ROUNDS; ++round) // warm up
+            validator.validate(cards, CANDIDATES, results);
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; ++round)
+            validator.validate(cards, CANDIDATES, results);
+        return (double) CANDIDATES * ROUNDS / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set;
+
+/**
+ * Checks many candidate sets at once, from the packed features of the cards (see UtilImpl).
+ * This is the scalar implementation; BatchValidators.create may return a vectorized one on newer JVMs.
+ */
+public class BatchValidator {
+
+    /**
+     * The number of values of each feature (the width of a packed feature lane), which is also the number of cards
+     * in each candidate set.
+     */
+    protected final int featureSize;
+
+    /**
+     * The packed features of every card.
+     */
+    protected final long[] packedTable;
+
+    /**
+     * The lowest bit of every feature lane in a packed card.
+     */
+    protected final long laneLowBits;
+
+    /**
+     * All the bits of all feature lanes in a packed card.
+     */
+    protected final long laneAllBits;
+
+    public BatchValidator(int featureSize, long[] packedTable, long laneLowBits, long laneAllBits) {
+        this.featureSize = featureSize;
+        this.packedTable = packedTable;
+        this.laneLowBits = laneLowBits;
+        this.laneAllBits = laneAllBits;
+    }
+
+    /**
+     * Checks which of the candidate sets are legal. The cards are given column by column: card j of candidate i is
+     * cards[j * count + i].
+     * @param cards   - the card ids of all the candidates (featureSize * count ids).
+     * @param count   - the number of candidates.
+     * @param results - results[i] is set to true iff candidate i is a legal set.
+     * @return        - the number of legal sets.
+     */
+    public int validate(int[] cards, int count, boolean[] results) {
+        return validate(cards, count, 0, results);
+    }
+
+    /**
+     * Checks the candidates from index from (inclusive) to count (exclusive), see validate(int[], int, boolean[]).
+     */
+    protected int validate(int[] cards, int count, int from, boolean[] results) {
+        int legal = 0;
+        for (int i = from; i < count; ++i) {
+            long and = laneAllBits, or = 0;
+            for (int j = 0; j < featureSize; ++j) {
+                long packed = packedTable[cards[j * count + i]];
+                and &= packed;
+                or |= packed;
+            }
+            results[i] = (nonEmptyLanes(and) | (laneLowBits & ~nonEmptyLanes(laneAllBits & ~or))) == laneLowBits;
+            if (results[i]) ++legal;
+        }
+        return legal;
+    }
+
+    /**
+     * Folds every feature lane of a packed card onto its lowest bit.
+     * @param packed - packed feature lanes.
+     * @return       - the lowest bit of every lane that has any bit set.
+     */
+    protected long nonEmptyLanes(long packed) {
+        long lanes = 0;
+        for (int i = 0; i < featureSize; ++i)
+            lanes |= packed >>> i;
+        return lanes & laneLowBits;
+    }
+
+    /**
+     * @return - a scalar validator over the same packed table (e.g. to compare against).
+     */
+    public BatchValidator scalar() {
+        return new BatchValidator(featureSize, packedTable, laneLowBits, laneAllBits);
+    }
+
+    /**
+     * @return - the name of the implementation (for logging).
+     */
+    public String name() {
+        return "scalar";
+    }
+}
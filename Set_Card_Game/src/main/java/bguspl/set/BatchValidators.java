@@ -0,0 +1,18 @@
+package bguspl.set;
+
+/**
+ * Creates the fastest BatchValidator the running JVM supports.
+ * Note: the jar is a multi-release jar, and JVMs that support the vector API load another version of this class
+ * (from META-INF/versions/17).
+ */
+public final class BatchValidators {
+
+    private BatchValidators() {}
+
+    /**
+     * @see BatchValidator#BatchValidator(int, long[], long, long)
+     */
+    public static BatchValidator create(int featureSize, long[] packedTable, long laneLowBits, long laneAllBits) {
+        return new BatchValidator(featureSize, packedTable, laneLowBits, laneAllBits);
+    }
+}
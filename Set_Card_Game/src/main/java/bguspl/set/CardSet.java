@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * A set of card ids (between 0 and capacity - 1) kept as a bitset, one bit per card.
+ * Counting and iterating go over 64 cards per word instead of over boxed card lists.
+ * Note: this class is not thread safe.
+ *
+ * @inv size() == number of cards c such that contains(c)
+ */
+public class CardSet {
+
+    /**
+     * The bits of the set (card c is in the set iff bit c % 64 of words[c / 64] is set).
+     */
+    private final long[] words;
+
+    /**
+     * The number of possible cards (i.e. the deck size).
+     */
+    private final int capacity;
+
+    /**
+     * The number of cards in the set.
+     */
+    private int size;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param capacity - the number of possible cards (i.e. the deck size).
+     */
+    public CardSet(int capacity) {
+        this.capacity = capacity;
+        words = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int card) {
+        return (words[card >>> 6] & 1L << card) != 0;
+    }
+
+    /**
+     * Adds a card to the set.
+     *
+     * @param card - the card id.
+     * @return     - true iff the card was not in the set before.
+     */
+    public boolean add(int card) {
+        long word = words[card >>> 6];
+        words[card >>> 6] = word | 1L << card;
+        if (word == words[card >>> 6]) return false;
+        ++size;
+        return true;
+    }
+
+    /**
+     * Removes a card from the set.
+     *
+     * @param card - the card id.
+     * @return     - true iff the card was in the set before.
+     */
+    public boolean remove(int card) {
+        long word = words[card >>> 6];
+        words[card >>> 6] = word & ~(1L << card);
+        if (word == words[card >>> 6]) return false;
+        --size;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+        size = 0;
+    }
+
+    /**
+     * @return - the cards of the set, in increasing order.
+     */
+    public int[] toArray() {
+        int[] cards = new int[size];
+        int index = 0;
+        for (int i = 0; i < words.length; ++i)
+            for (long word = words[i]; word != 0; word &= word - 1)
+                cards[index++] = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+        return cards;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
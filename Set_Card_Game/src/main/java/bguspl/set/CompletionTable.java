@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A memory-mapped table of the card completing each pair of cards to a set (for decks of 3-card sets).
+ * The table is generated once per (featureCount, featureSize) into a cache file, and mapped (read only) from it
+ * afterwards, so lookups need neither heap memory nor computation.
+ *
+ * @inv third(a, b) == third(b, a)
+ */
+public class CompletionTable {
+
+    /**
+     * The first int of every cache file (followed by the feature count and size the table was generated for).
+     */
+    private static final int MAGIC = 0x5e7c0de1;
+
+    /**
+     * The size (in bytes) of the cache file header.
+     */
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private final int deckSize;
+
+    /**
+     * The mapped cache file: a header followed by the completion of every pair (a, b) with a < b, in lexicographic
+     * order, each one an unsigned 16-bit card id.
+     */
+    private final ByteBuffer buffer;
+
+    private CompletionTable(int deckSize, ByteBuffer buffer) {
+        this.deckSize = deckSize;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the completion table of the configured deck, generating its cache file first if needed.
+     *
+     * @param logger - the logger to report to.
+     * @param config - the game configuration (config.completionTableCache is the cache directory).
+     * @return       - the completion table, or null if it is disabled, not supported for this deck, or the cache
+     *                 file cannot be used.
+     */
+    public static CompletionTable load(Logger logger, Config config) {
+        if (config.completionTableCache.isEmpty()) return null;
+        if (config.featureSize != 3 || config.deckSize > 1 << Character.SIZE
+                || fileBytes(config.deckSize) > Integer.MAX_VALUE) {
+            logger.log(Level.WARNING, "completion table is not supported for " + config.featureCount + " features of size "
+                    + config.featureSize + ".");
+            return null;
+        }
+
+        Path file = Paths.get(config.completionTableCache,
+                "completion-" + config.featureCount + "x" + config.featureSize + ".bin");
+        try {
+            if (!isValid(file, config)) {
+                long start = System.currentTimeMillis();
+                generate(file, config);
+                logger.log(Level.INFO, "completion table generated in " + file + " ("
+                        + (System.currentTimeMillis() - start) + " ms).");
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                logger.log(Level.INFO, "completion table mapped from " + file + ".");
+                return new CompletionTable(config.deckSize, buffer);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot use completion table cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the card completing two different cards to a set.
+     *
+     * @param a - a card id.
+     * @param b - another card id.
+     * @return  - the id of the only card forming a set with a and b.
+     * @throws IllegalArgumentException - if a and b are the same card, or either one is not a card id of the deck.
+     */
+    public int third(int a, int b) {
+        if (a == b || a < 0 || b < 0 || a >= deckSize || b >= deckSize)
+            throw new IllegalArgumentException("no completion for cards " + a + " and " + b + " of " + deckSize);
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        return buffer.getChar(HEADER_BYTES + Character.BYTES * (int) pairIndex(deckSize, a, b));
+    }
+
+    private static long pairIndex(int deckSize, int a, int b) {
+        return (long) a * (2L * deckSize - a - 1) / 2 + (b - a - 1);
+    }
+
+    private static long fileBytes(int deckSize) {
+        return HEADER_BYTES + (long) Character.BYTES * deckSize * (deckSize - 1) / 2;
+    }
+
+    private static boolean isValid(Path file, Config config) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != fileBytes(config.deckSize)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            return header.remaining() == HEADER_BYTES && header.getInt() == MAGIC
+                    && header.getInt() == config.featureCount && header.getInt() == config.featureSize;
+        }
+    }
+
+    /**
+     * Writes the table to a temporary file and moves it into place, so a partially written table is never used.
+     */
+    private static void generate(Path file, Config config) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "completion", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes(config.deckSize));
+                out.putInt(MAGIC).putInt(config.featureCount).putInt(config.featureSize);
+
+                UtilImpl util = new UtilImpl(config);
+                int[] pair = new int[2];
+                for (pair[0] = 0; pair[0] < config.deckSize; ++pair[0])
+                    for (pair[1] = pair[0] + 1; pair[1] < config.deckSize; ++pair[1])
+                        out.putChar((char) util.completeSet(pair));
+                out.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
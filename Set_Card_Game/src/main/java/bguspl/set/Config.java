@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +31,21 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The set finding strategy to use (naive, completion, parallel or auto to pick the fastest one at startup)
+     */
+    public final String setFinder;
+
+    /**
+     * The directory of the completion table cache files (empty to disable the completion table)
+     */
+    public final String completionTableCache;
+
+    /**
+     * The seed of the deck shuffling (a random one is picked and logged if none is configured, so any game can be replayed)
+     */
+    public final long deckSeed;
+
     /**
      * The number of human players in the game.
      */
@@ -50,6 +66,21 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether the dealer picks the cards it deals so there is always a legal set on the table (reshuffling early if it cannot)
+     */
+    public final boolean guaranteeSet;
+
+    /**
+     * What a player does with a key press while its queue of key presses is full (block, drop-newest or coalesce)
+     */
+    public final String keyPressPolicy;
+
+    /**
+     * Whether to run the dealer, player and computer player threads as virtual threads (needs Java 21+)
+     */
+    public final boolean virtualThreads;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -173,6 +204,10 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        setFinder = properties.getProperty("SetFinder", "completion").trim().toLowerCase();
+        completionTableCache = properties.getProperty("CompletionTableCache", "").trim();
+        String seed = properties.getProperty("DeckSeed", "").trim();
+        deckSeed = seed.isEmpty() ? new Random().nextLong() : Long.parseLong(seed);
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -180,6 +215,9 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        guaranteeSet = Boolean.parseBoolean(properties.getProperty("GuaranteeSet", "False"));
+        keyPressPolicy = properties.getProperty("KeyPressPolicy", "block").trim().toLowerCase();
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
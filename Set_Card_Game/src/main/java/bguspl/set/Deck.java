@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The dealer's deck: the cards are kept in a plain array that is shuffled incrementally (one Fisher-Yates step per
+ * draw), so drawing a card, returning a card and taking out a given card all take O(1).
+ * Note: this class is not thread safe.
+ *
+ * @inv cards[position[c]] == c for every card c in the deck, and position[c] == -1 for every other card
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck are cards[0] to cards[size - 1] (in no particular order).
+     */
+    private final int[] cards;
+
+    /**
+     * The index of each card in cards (-1 if the card is not in the deck).
+     */
+    private final int[] position;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    private final Random random;
+
+    /**
+     * Creates a deck holding all the cards.
+     *
+     * @param deckSize - the number of cards (card ids are 0 to deckSize - 1).
+     * @param random   - the random generator that decides the order of the draws.
+     */
+    public Deck(int deckSize, Random random) {
+        this.random = random;
+        cards = new int[deckSize];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card)
+            cards[card] = position[card] = card;
+        size = deckSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * Draws a uniformly random card: a Fisher-Yates step that swaps a random card to the end and cuts it off.
+     *
+     * @return - the card drawn, or -1 if the deck is empty.
+     */
+    public int draw() {
+        if (size == 0) return -1;
+        int card = cards[random.nextInt(size)];
+        remove(card);
+        return card;
+    }
+
+    /**
+     * Returns a card to the deck (nothing happens if it is there already).
+     *
+     * @param card - the card id.
+     * @return     - true iff the card was added.
+     */
+    public boolean add(int card) {
+        if (position[card] >= 0) return false;
+        cards[size] = card;
+        position[card] = size++;
+        return true;
+    }
+
+    /**
+     * Takes a given card out of the deck by moving the last card into its place.
+     *
+     * @param card - the card id.
+     * @return     - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int index = position[card];
+        if (index < 0) return false;
+        int last = cards[--size];
+        cards[index] = last;
+        position[last] = index;
+        position[card] = -1;
+        return true;
+    }
+
+    /**
+     * Returns a card of the deck by its index, to go over the deck without copying it.
+     *
+     * @param index - the index of the card (0 <= index < size()).
+     * @return      - the card id (the order of the cards changes whenever the deck changes).
+     */
+    public int get(int index) {
+        return cards[index];
+    }
+
+    /**
+     * @return - the cards in the deck (in no particular order).
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(cards, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +10,18 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    //////////////////////// FIELDS ADDED ////////////////////////
+
+    /**
+     * The timer wheel of the game's deadlines (5 ms ticks, 512 buckets; its thread starts on the first deadline).
+     */
+    public final TimerWheel timers;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.timers = new TimerWheel("timer-wheel", 5, TimeUnit.MILLISECONDS, 512, logger);
     }
 }
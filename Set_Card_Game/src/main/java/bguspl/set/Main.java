@@ -29,7 +29,7 @@ public class Main {
         Config config = new Config(logger, "config.properties");
         UserInterfaceImpl ui = new UserInterfaceImpl(logger, config);
         EventQueue.invokeLater(() -> ui.setVisible(true));
-        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        Env env = new Env(logger, config, ui, UtilStrategies.create(logger, config));
 
         // create the game entities
         Player[] players = new Player[env.config.players];
@@ -40,8 +40,11 @@ public class Main {
         ui.addKeyListener(new InputManager(env, players));
         ui.addWindowListener(new WindowManager(env, dealer));
 
+        if (config.virtualThreads && !Threads.virtualThreadsSupported())
+            logger.log(Level.WARNING, "virtual threads are not supported by this JVM, using platform threads");
+
         // start the dealer thread
-        Thread dealerThread = new Thread(dealer, "dealer");
+        Thread dealerThread = Threads.newThread(dealer, "dealer", config.virtualThreads);
         dealerThread.start();
 
         try {dealerThread.join();} catch (InterruptedException ignored) {}
@@ -0,0 +1,36 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A Util implementation that finds sets by checking every combination of cards (O(n^featureSize) per search).
+ * It is the reference the other strategies are measured against, and the fastest one for very small decks.
+ */
+public class NaiveUtilImpl extends UtilImpl {
+
+    public NaiveUtilImpl(Config config) {
+        super(config);
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        return findSetsByCombinations(deck, count);
+    }
+
+    @Override
+    public int findSets(int[] cards, int count, Consumer<int[]> action) {
+        if (count <= 0) return 0;
+        List<int[]> sets = findSetsByCombinations(Arrays.stream(cards).boxed().collect(Collectors.toList()), count);
+        sets.forEach(action);
+        return sets.size();
+    }
+
+    @Override
+    public Stream<int[]> sets(int[] cards) {
+        return findSetsByCombinations(Arrays.stream(cards).boxed().collect(Collectors.toList()), Integer.MAX_VALUE).stream();
+    }
+}
@@ -0,0 +1,114 @@
+package bguspl.set;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A Util implementation that splits the set search of large decks across a fork/join pool.
+ */
+public class ParallelUtilImpl extends UtilImpl {
+
+    /**
+     * Decks smaller than this are searched sequentially (splitting them costs more than it saves).
+     */
+    private static final int MIN_PARALLEL_DECK = 64;
+
+    /**
+     * The pool the searches run on.
+     */
+    private final ForkJoinPool pool;
+
+    public ParallelUtilImpl(Config config) {
+        this(config, null, ForkJoinPool.commonPool());
+    }
+
+    public ParallelUtilImpl(Config config, CompletionTable completions, ForkJoinPool pool) {
+        super(config, completions);
+        this.pool = pool;
+    }
+
+    /**
+     * Finds and returns up to count sets in the given collection of cards. When the deck is searched in parallel and
+     * count is smaller than the number of sets, the sets returned are not necessarily the first ones in deck order.
+     * The same goes for findSets(int[], int, Consumer), which passes the sets to its action once the search is done.
+     * @param deck  - a collection of cards (may not include null objects).
+     * @param count - the maximum number of sets to find.
+     * @return      - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        if (config.featureSize < 3 || deck.size() < MIN_PARALLEL_DECK) return super.findSets(deck, count);
+        return search(toArray(deck), count);
+    }
+
+    @Override
+    public int findSets(int[] cards, int count, Consumer<int[]> action) {
+        if (config.featureSize < 3 || cards.length < MIN_PARALLEL_DECK) return super.findSets(cards, count, action);
+
+        List<int[]> sets = search(cards, count);
+        sets.forEach(action);
+        return sets.size();
+    }
+
+    private List<int[]> search(int[] cards, int count) {
+        int leafSize = Math.max(1, cards.length / (pool.getParallelism() * 8));
+        return pool.invoke(new SearchTask(cards, positions(cards), 0, cards.length, leafSize, count, new AtomicInteger()));
+    }
+
+    /**
+     * Searches the sets whose first card is in a range of indices, splitting the range in halves until it is small
+     * enough. The results of the halves are joined in order, so a full search returns the sets in deck order.
+     */
+    private class SearchTask extends RecursiveTask<LinkedList<int[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cards;
+        private final int[] position;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final int count;
+
+        /**
+         * The number of sets found by all the tasks of the search (shared so every task stops once count is reached).
+         */
+        private final AtomicInteger found;
+
+        SearchTask(int[] cards, int[] position, int from, int to, int leafSize, int count, AtomicInteger found) {
+            this.cards = cards;
+            this.position = position;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.count = count;
+            this.found = found;
+        }
+
+        @Override
+        protected LinkedList<int[]> compute() {
+            LinkedList<int[]> sets = new LinkedList<>();
+            if (found.get() >= count) return sets;
+
+            if (to - from <= leafSize) {
+                forEachSet(cards, position, from, to, set -> {
+                    if (found.getAndIncrement() >= count) return false;
+                    sets.add(set);
+                    return found.get() < count;
+                });
+                return sets;
+            }
+
+            int middle = (from + to) >>> 1;
+            SearchTask right = new SearchTask(cards, position, middle, to, leafSize, count, found);
+            right.fork();
+            sets.addAll(new SearchTask(cards, position, from, middle, leafSize, count, found).compute());
+            sets.addAll(right.join());
+            return sets;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps track of the legal sets in a changing collection of cards. Adding or removing a card only looks at the sets
+ * that include it (O(n) per card for 3-card sets), so the number of sets is always known without a full search.
+ * Note: updates are synchronized, reads are lock-free.
+ *
+ * @inv count() == number of sets among cards()
+ */
+public class SetIndex {
+
+    private final Util util;
+
+    /**
+     * The cards in the collection.
+     */
+    private final CardSet cards;
+
+    /**
+     * True iff the sets themselves (not only their number) are tracked.
+     */
+    private final boolean trackSets;
+
+    /**
+     * The number of sets among the cards.
+     */
+    private volatile long count;
+
+    /**
+     * The sets among the cards (an immutable snapshot replaced on every change, empty if sets are not tracked).
+     */
+    private volatile List<int[]> sets = Collections.emptyList();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param util      - the util used to find the sets including a card.
+     * @param deckSize  - the number of cards in the deck.
+     * @param trackSets - true to keep the sets themselves, false to only count them.
+     */
+    public SetIndex(Util util, int deckSize, boolean trackSets) {
+        this.util = util;
+        this.cards = new CardSet(deckSize);
+        this.trackSets = trackSets;
+    }
+
+    /**
+     * Adds a card to the collection (nothing happens if it is there already).
+     *
+     * @param card - the card id.
+     */
+    public synchronized void add(int card) {
+        if (cards.contains(card)) return;
+        List<int[]> added = trackSets ? new ArrayList<>() : null;
+        count += util.findSetsWith(card, cards, set -> {
+            if (added != null) added.add(set);
+        });
+        cards.add(card);
+        if (trackSets && !added.isEmpty()) {
+            List<int[]> updated = new ArrayList<>(sets);
+            updated.addAll(added);
+            sets = Collections.unmodifiableList(updated);
+        }
+    }
+
+    /**
+     * Removes a card from the collection (nothing happens if it is not there).
+     *
+     * @param card - the card id.
+     */
+    public synchronized void remove(int card) {
+        if (!cards.remove(card)) return;
+        count -= util.findSetsWith(card, cards, set -> {});
+        if (trackSets) {
+            List<int[]> updated = new ArrayList<>(sets.size());
+            for (int[] set : sets)
+                if (Arrays.binarySearch(set, card) < 0)
+                    updated.add(set);
+            sets = Collections.unmodifiableList(updated);
+        }
+    }
+
+    /**
+     * @return - the number of sets among the cards.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return - true iff there is at least one set among the cards.
+     */
+    public boolean hasSet() {
+        return count > 0;
+    }
+
+    /**
+     * @return - the sets among the cards (each one sorted), or an empty list if sets are not tracked.
+     */
+    public List<int[]> sets() {
+        return sets;
+    }
+
+    /**
+     * @return - a copy of the cards in the collection.
+     */
+    public synchronized int[] cards() {
+        return cards.toArray();
+    }
+}
@@ -0,0 +1,14 @@
+package bguspl.set;
+
+/**
+ * Checks if an array of cards forms a legal set (see SetValidators for the implementations).
+ */
+public interface SetValidator {
+
+    /**
+     * Checks if an array of cards forms a legal set.
+     * @param cards - the array of cards.
+     * @return      - true iff the array forms a legal set.
+     */
+    boolean test(int[] cards);
+}
@@ -0,0 +1,156 @@
+package bguspl.set;
+
+/**
+ * Creates set validators specialized to the deck configuration and the number of cards in a set.
+ * The common rule variants (3 or 4 cards of 3 or 4 valued features) get fully unrolled validators over the packed
+ * feature table, so the checks compile to a few straight-line bitwise operations; other variants get generic loops.
+ */
+public final class SetValidators {
+
+    private SetValidators() {}
+
+    /**
+     * Creates the validator for sets of setSize cards.
+     * @param featureCount - the number of features on the cards.
+     * @param featureSize  - the number of values of each feature.
+     * @param setSize      - the number of cards in the sets to check.
+     * @param featureTable - the features of every card (featureTable[card][i] is the value of feature i).
+     * @param packedTable  - the one-hot packed features of every card (see UtilImpl), null if they do not fit.
+     * @param laneLowBits  - the lowest bit of every feature lane in a packed card.
+     * @return             - the validator.
+     */
+    public static SetValidator create(int featureCount, int featureSize, int setSize, int[][] featureTable,
+                                      long[] packedTable, long laneLowBits) {
+        if (setSize < 2) {
+            // a single card (or none) is both sameSame and butDifferent, which is not a set (unless there are no features)
+            boolean legal = featureCount == 0;
+            return cards -> legal;
+        }
+        if (packedTable == null || setSize > featureSize) return new ByFeatures(featureCount, featureTable);
+        if (setSize == 3 && featureSize == 3) return new ThreeOfThree(packedTable, laneLowBits);
+        if (setSize == 4 && featureSize == 4) return new FourOfFour(packedTable, laneLowBits);
+        return new Packed(featureCount, featureSize, packedTable, laneLowBits);
+    }
+
+    /**
+     * 3 cards with 3 valued features: a feature is legal iff its bit survives the AND of the cards (sameSame) or its
+     * lane is full in the OR of the cards (butDifferent).
+     */
+    private static final class ThreeOfThree implements SetValidator {
+
+        private final long[] packed;
+        private final long low;
+
+        ThreeOfThree(long[] packed, long low) {
+            this.packed = packed;
+            this.low = low;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            long a = packed[cards[0]], b = packed[cards[1]], c = packed[cards[2]];
+            long and = a & b & c, or = a | b | c;
+            long sameSame = (and | and >>> 1 | and >>> 2) & low;
+            long butDifferent = or & or >>> 1 & or >>> 2 & low;
+            return (sameSame | butDifferent) == low;
+        }
+    }
+
+    /**
+     * 4 cards with 4 valued features (same as ThreeOfThree with 4 bit lanes).
+     */
+    private static final class FourOfFour implements SetValidator {
+
+        private final long[] packed;
+        private final long low;
+
+        FourOfFour(long[] packed, long low) {
+            this.packed = packed;
+            this.low = low;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            long a = packed[cards[0]], b = packed[cards[1]], c = packed[cards[2]], d = packed[cards[3]];
+            long and = a & b & c & d, or = a | b | c | d;
+            long sameSame = (and | and >>> 1 | and >>> 2 | and >>> 3) & low;
+            long butDifferent = or & or >>> 1 & or >>> 2 & or >>> 3 & low;
+            return (sameSame | butDifferent) == low;
+        }
+    }
+
+    /**
+     * Any number of cards up to featureSize: a feature is butDifferent iff its lane in the OR of the cards has a bit
+     * for every card.
+     */
+    private static final class Packed implements SetValidator {
+
+        private final int featureCount;
+        private final int featureSize;
+        private final long[] packed;
+        private final long low;
+        private final long laneMask;
+
+        Packed(int featureCount, int featureSize, long[] packed, long low) {
+            this.featureCount = featureCount;
+            this.featureSize = featureSize;
+            this.packed = packed;
+            this.low = low;
+            this.laneMask = (1L << featureSize) - 1;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            long and = ~0L, or = 0;
+            for (int card : cards) {
+                and &= packed[card];
+                or |= packed[card];
+            }
+            for (int i = 0, shift = 0; i < featureCount; ++i, shift += featureSize) {
+                boolean sameSame = (and >>> shift & laneMask) != 0;
+                boolean butDifferent = Long.bitCount(or >>> shift & laneMask) == cards.length;
+                if (!sameSame && !butDifferent) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Compares the feature values themselves (for decks whose features cannot be packed).
+     */
+    private static final class ByFeatures implements SetValidator {
+
+        private final int featureCount;
+        private final int[][] features;
+
+        ByFeatures(int featureCount, int[][] features) {
+            this.featureCount = featureCount;
+            this.features = features;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            for (int i = 0; i < featureCount; ++i) {
+                boolean sameSame = true, butDifferent = true;
+
+                // check if this features is sameSame in all cards
+                for (int j = 1; j < cards.length; ++j)
+                    if (features[cards[0]][i] != features[cards[j]][i]) {
+                        sameSame = false;
+                        break;
+                    }
+
+                // check if this feature is butDifferent in all cards
+                for (int j = 1; j < cards.length; ++j)
+                    for (int k = j; k < cards.length; ++k)
+                        if (features[cards[j - 1]][i] == features[cards[k]][i]) {
+                            butDifferent = false;
+                            break;
+                        }
+
+                if (sameSame == butDifferent) return false;
+            }
+            return true;
+        }
+    }
+}
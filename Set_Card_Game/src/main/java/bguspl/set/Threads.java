@@ -0,0 +1,30 @@
+package bguspl.set;
+
+/**
+ * Creates the threads of the game (the dealer, the players and the computer players' key press generators).
+ * Note: the jar is a multi-release jar, and JVMs that support virtual threads load another version of this class
+ * (from META-INF/versions/21).
+ */
+public final class Threads {
+
+    private Threads() {}
+
+    /**
+     * @return - true iff the running JVM can create virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return false;
+    }
+
+    /**
+     * Creates a thread (not started yet).
+     *
+     * @param task    - the task the thread runs.
+     * @param name    - the name of the thread.
+     * @param virtual - true for a virtual thread (a platform thread is created if they are not supported).
+     * @return - the thread.
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        return new Thread(task, name);
+    }
+}
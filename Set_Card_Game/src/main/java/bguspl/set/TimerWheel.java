@@ -0,0 +1,307 @@
+package bguspl.set;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel: deadlines are hashed by their tick into a ring of buckets, so scheduling and cancelling a
+ * deadline take O(1) no matter how many deadlines are pending. A single thread advances the wheel one tick at a time
+ * and runs the tasks of the deadlines that expired, so callbacks never run concurrently with each other and must be
+ * short (typically they only wake up the thread that does the actual work).
+ * Note: the thread is a daemon thread started on the first schedule, and it parks while no deadline is pending.
+ */
+public class TimerWheel {
+
+    /**
+     * A handle to a scheduled deadline.
+     */
+    public interface Timeout {
+
+        /**
+         * Cancels the deadline (nothing happens if it has already expired).
+         *
+         * @return - true iff the task will not run because of this call.
+         */
+        boolean cancel();
+
+        /**
+         * @return - true iff the task has run (or is running).
+         */
+        boolean isExpired();
+
+        /**
+         * @return - true iff the deadline has been cancelled.
+         */
+        boolean isCancelled();
+    }
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final String name;
+    private final Logger logger;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    /**
+     * Deadlines scheduled since the last tick (the wheel itself is only touched by the wheel thread).
+     */
+    private final Queue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Deadlines cancelled since the last tick, to be unlinked from their buckets.
+     */
+    private final Queue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of deadlines that have neither expired nor been cancelled.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The next tick to process (counted from startNanos).
+     */
+    private long tick;
+
+    private volatile Thread thread;
+    private volatile boolean terminate;
+
+    /**
+     * Creates a timer wheel (its thread starts on the first schedule).
+     *
+     * @param name       - the name of the wheel thread.
+     * @param tick       - the duration of a tick, i.e. the precision of the deadlines.
+     * @param unit       - the time unit of tick.
+     * @param wheelSize  - the number of buckets (rounded up to a power of 2).
+     * @param logger     - the logger for exceptions thrown by tasks.
+     */
+    public TimerWheel(String name, long tick, TimeUnit unit, int wheelSize, Logger logger) {
+        if (tick <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException("tick and wheelSize must be positive");
+        this.name = name;
+        this.logger = logger;
+        this.tickNanos = unit.toNanos(tick);
+        int buckets = 1;
+        while (buckets < wheelSize)
+            buckets <<= 1;
+        this.wheel = new Bucket[buckets];
+        for (int i = 0; i < wheel.length; i++)
+            wheel[i] = new Bucket();
+        this.mask = wheel.length - 1;
+    }
+
+    /**
+     * Schedules a task to run on the wheel thread once a delay has passed.
+     *
+     * @param delay - the delay (a deadline in the past expires on the next tick).
+     * @param unit  - the time unit of delay.
+     * @param task  - the task to run.
+     * @return - a handle to cancel the deadline.
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        if (terminate)
+            throw new IllegalStateException("timer wheel " + name + " is stopped");
+        Entry entry = new Entry(task, System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay)));
+        scheduled.add(entry);
+        if (size.getAndIncrement() == 0)
+            wakeUp();
+        return entry;
+    }
+
+    /**
+     * Blocks the calling thread until a delay has passed on the wheel (returns at once for a delay that is not
+     * positive). The deadline is cancelled if the thread is interrupted.
+     *
+     * @param delay - the delay.
+     * @param unit  - the time unit of delay.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void await(long delay, TimeUnit unit) throws InterruptedException {
+        if (delay <= 0)
+            return;
+        CountDownLatch done = new CountDownLatch(1);
+        Timeout timeout = schedule(delay, unit, done::countDown);
+        try {
+            done.await();
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @return - the number of pending deadlines.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Stops the wheel thread. Pending deadlines never expire.
+     */
+    public void stop() {
+        terminate = true;
+        Thread current = thread;
+        if (current != null)
+            LockSupport.unpark(current);
+    }
+
+    private void wakeUp() {
+        Thread current = thread;
+        if (current == null) {
+            synchronized (this) {
+                if (thread == null) {
+                    current = new Thread(this::run, name);
+                    current.setDaemon(true);
+                    thread = current;
+                    current.start();
+                    return;
+                }
+                current = thread;
+            }
+        }
+        LockSupport.unpark(current);
+    }
+
+    /**
+     * The main loop of the wheel thread.
+     */
+    private void run() {
+        tick = (System.nanoTime() - startNanos) / tickNanos;
+        while (!terminate) {
+            if (size.get() == 0) {
+                LockSupport.park(this);
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos); // skip the ticks spent parked
+                continue;
+            }
+            long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            unlinkCancelled();
+            transferScheduled();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void unlinkCancelled() {
+        for (Entry entry = cancelled.poll(); entry != null; entry = cancelled.poll())
+            if (entry.bucket != null)
+                entry.bucket.remove(entry);
+    }
+
+    private void transferScheduled() {
+        for (Entry entry = scheduled.poll(); entry != null; entry = scheduled.poll()) {
+            if (entry.state.get() != PENDING)
+                continue;
+            long deadlineTick = Math.max(tick, (entry.deadlineNanos + tickNanos - 1) / tickNanos);
+            entry.rounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(entry);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Entry entry = bucket.head;
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.rounds > 0) {
+                entry.rounds--;
+            } else {
+                bucket.remove(entry);
+                if (entry.state.compareAndSet(PENDING, EXPIRED)) {
+                    size.decrementAndGet();
+                    try {
+                        entry.task.run();
+                    } catch (Throwable throwable) {
+                        logger.log(Level.SEVERE, "timer task failed on " + name, throwable);
+                    }
+                }
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * A scheduled deadline, linked into the bucket of its tick.
+     */
+    private final class Entry implements Timeout {
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // the following are only touched by the wheel thread
+        private long rounds;
+        private Bucket bucket;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED))
+                return false;
+            size.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+    /**
+     * A doubly linked list of deadlines, so an entry is unlinked in O(1).
+     */
+    private static final class Bucket {
+
+        private Entry head;
+        private Entry tail;
+
+        private void add(Entry entry) {
+            entry.bucket = this;
+            entry.prev = tail;
+            entry.next = null;
+            if (tail == null)
+                head = entry;
+            else
+                tail.next = entry;
+            tail = entry;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.prev == null)
+                head = entry.next;
+            else
+                entry.prev.next = entry.next;
+            if (entry.next == null)
+                tail = entry.prev;
+            else
+                entry.next.prev = entry.prev;
+            entry.prev = entry.next = null;
+            entry.bucket = null;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package bguspl.set;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -35,4 +39,84 @@ public interface Util {
      * @return      - a list of up to count integer arrays, each one contains the card ids of a legal set.
      */
     List<int[]> findSets(List<Integer> deck, int count);
+
+    /**
+     * Finds up to count sets in the given array of cards and passes each one to an action as soon as it is found.
+     * @param cards  - an array of card ids.
+     * @param count  - the maximum number of sets to find.
+     * @param action - called (on the calling thread) with the card ids of each set found.
+     * @return       - the number of sets found.
+     */
+    default int findSets(int[] cards, int count, Consumer<int[]> action) {
+        List<int[]> sets = findSets(Arrays.stream(cards).boxed().collect(Collectors.toList()), count);
+        sets.forEach(action);
+        return sets.size();
+    }
+
+    /**
+     * Returns a stream of the sets in the given array of cards. Implementations may find the sets lazily (so
+     * short-circuiting operations stop the search) and split the search when the stream is parallel.
+     * @param cards - an array of card ids.
+     * @return      - a stream of integer arrays, each one contains the card ids of a legal set.
+     */
+    default Stream<int[]> sets(int[] cards) {
+        return findSets(Arrays.stream(cards).boxed().collect(Collectors.toList()), Integer.MAX_VALUE).stream();
+    }
+
+    /**
+     * Finds up to count sets in the given set of cards and passes each one to an action as soon as it is found.
+     * @param cards  - a set of card ids.
+     * @param count  - the maximum number of sets to find.
+     * @param action - called (on the calling thread) with the card ids of each set found.
+     * @return       - the number of sets found.
+     */
+    default int findSets(CardSet cards, int count, Consumer<int[]> action) {
+        return findSets(cards.toArray(), count, action);
+    }
+
+    /**
+     * Finds the sets in the given set of cards plus one more card that include that card, and passes each one to
+     * an action as soon as it is found.
+     * @param card   - the card every set must include.
+     * @param cards  - a set of card ids (whether it contains card or not does not matter).
+     * @param action - called (on the calling thread) with the card ids of each set found.
+     * @return       - the number of sets found.
+     */
+    default int findSetsWith(int card, CardSet cards, Consumer<int[]> action) {
+        int r = setSize();
+        int[] others = Arrays.stream(cards.toArray()).filter(other -> other != card).toArray();
+        int n = others.length;
+        int found = 0;
+        if (r < 2 || n < r - 1) return found;
+
+        int[] combination = new int[r - 1];
+        for (int i = 0; i < r - 1; ++i)
+            combination[i] = i;
+
+        while (combination[r - 2] < n) {
+            int[] set = new int[r];
+            for (int i = 0; i < r - 1; ++i)
+                set[i] = others[combination[i]];
+            set[r - 1] = card;
+            Arrays.sort(set);
+            if (testSet(set)) {
+                action.accept(set);
+                ++found;
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 2;
+            while (t != 0 && combination[t] == n - r + 1 + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return found;
+    }
+
+    /**
+     * @return - the number of cards in a set.
+     */
+    default int setSize() {
+        return 3;
+    }
 }
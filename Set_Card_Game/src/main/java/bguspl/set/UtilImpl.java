@@ -1,19 +1,93 @@
 package bguspl.set;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
  */
 public class UtilImpl implements Util {
 
-    private final Config config;
+    protected final Config config;
+
+    /**
+     * The features of every card in the deck (featureTable[card][i] is the value of feature i), computed once.
+     */
+    private final int[][] featureTable;
+
+    /**
+     * The features of every card packed into a single long: feature i takes the featureSize bits starting at bit
+     * i * featureSize, and exactly one of them (the one for its value) is set. Null if the features do not fit in
+     * 64 bits.
+     */
+    private final long[] packedTable;
+
+    /**
+     * The lowest bit of every feature lane in a packed card.
+     */
+    private final long laneLowBits;
+
+    /**
+     * All the bits of all feature lanes in a packed card.
+     */
+    private final long laneAllBits;
+
+    /**
+     * The validators of sets of every size up to featureSize (validators[n] checks n cards, and validators[0] is
+     * the generic one used for more cards than that).
+     */
+    private final SetValidator[] validators;
+
+    /**
+     * The completion table of the deck (null if not used).
+     */
+    private final CompletionTable completions;
+
+    /**
+     * The indices of the first featureSize - 1 cards (the combination completeSet(cards) completes).
+     */
+    private final int[] firstCards;
 
     public UtilImpl(Config config) {
+        this(config, null);
+    }
+
+    public UtilImpl(Config config, CompletionTable completions) {
         this.config = config;
+        this.completions = completions;
+        firstCards = new int[Math.max(0, config.featureSize - 1)];
+        for (int i = 0; i < firstCards.length; ++i)
+            firstCards[i] = i;
+
+        featureTable = new int[config.deckSize][config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            cardToFeatures(card, featureTable[card]);
+
+        boolean packable = config.featureCount * config.featureSize <= Long.SIZE;
+        packedTable = packable ? new long[config.deckSize] : null;
+        long lowBits = 0;
+        for (int i = 0; packable && i < config.featureCount; ++i)
+            lowBits |= 1L << (i * config.featureSize);
+        laneLowBits = lowBits;
+        laneAllBits = packable ? lowBits * ((1L << config.featureSize) - 1) : 0;
+        for (int card = 0; packable && card < config.deckSize; ++card)
+            for (int i = 0; i < config.featureCount; ++i)
+                packedTable[card] |= 1L << (i * config.featureSize + featureTable[card][i]);
+
+        validators = new SetValidator[config.featureSize + 1];
+        for (int setSize = 1; setSize <= config.featureSize; ++setSize)
+            validators[setSize] = SetValidators.create(config.featureCount, config.featureSize, setSize, featureTable,
+                    packedTable, laneLowBits);
+        validators[0] = SetValidators.create(config.featureCount, config.featureSize, Integer.MAX_VALUE, featureTable,
+                null, laneLowBits);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -25,46 +99,311 @@ public class UtilImpl implements Util {
 
     @Override
     public int[] cardToFeatures(int card) {
-        int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
-        return features;
+        return featureTable[card].clone();
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
-        int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        int[][] features = new int[cards.length][];
+        for (int i = 0; i < cards.length; ++i)
+            features[i] = featureTable[cards[i]].clone();
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
-
-            if (sameSame == butDifferent) return false;
-        }
-        return true;
+        return (cards.length < validators.length ? validators[cards.length] : validators[0]).test(cards);
+    }
+
+    /**
+     * Creates a validator that checks many candidate sets at once using the packed feature table.
+     * @return - the fastest batch validator the running JVM supports.
+     * @throws UnsupportedOperationException - if the card features do not fit in 64 bits.
+     */
+    public BatchValidator batchValidator() {
+        if (packedTable == null)
+            throw new UnsupportedOperationException("the features of " + config.featureCount + " x " + config.featureSize
+                    + " cards cannot be packed");
+        return BatchValidators.create(config.featureSize, packedTable, laneLowBits, laneAllBits);
     }
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        // with less than 3 cards per set the completing card is not unique, so check every combination instead
+        if (config.featureSize < 3) return findSetsByCombinations(deck, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        if (deck.size() < config.featureSize) return sets;
+
+        int[] cards = toArray(deck);
+        forEachSet(cards, positions(cards), 0, cards.length, set -> {
+            sets.add(set);
+            return sets.size() < count;
+        });
+        return sets;
+    }
+
+    @Override
+    public int findSets(int[] cards, int count, Consumer<int[]> action) {
+        if (config.featureSize < 3) return Util.super.findSets(cards, count, action);
+
+        int[] found = {0};
+        if (count <= 0 || cards.length < config.featureSize) return found[0];
+        forEachSet(cards, positions(cards), 0, cards.length, set -> {
+            action.accept(set);
+            return ++found[0] < count;
+        });
+        return found[0];
+    }
+
+    @Override
+    public Stream<int[]> sets(int[] cards) {
+        if (config.featureSize < 3) return Util.super.sets(cards);
+
+        int[] copy = cards.clone();
+        return StreamSupport.stream(new SetSpliterator(copy, positions(copy), 0, copy.length), false);
+    }
+
+    @Override
+    public int findSetsWith(int card, CardSet cards, Consumer<int[]> action) {
+        int r = config.featureSize;
+        if (r < 3) return Util.super.findSetsWith(card, cards, action);
+
+        // the other cards (in increasing order) followed by the card itself
+        int[] buffer = cards.toArray();
+        int n = buffer.length;
+        if (cards.contains(card)) {
+            int index = Arrays.binarySearch(buffer, card);
+            System.arraycopy(buffer, index + 1, buffer, index, --n - index);
+        } else {
+            buffer = Arrays.copyOf(buffer, n + 1);
+        }
+        buffer[n] = card;
+        if (n < r - 1) return 0;
+
+        // go over the combinations of r - 2 other cards, and take the completion of each one (with the card) iff it
+        // comes after the other cards, so every set is found once
+        int found = 0;
+        int[] combination = new int[r - 1];
+        for (int i = 0; i < r - 2; ++i)
+            combination[i] = i;
+        combination[r - 2] = n;
+
+        while (combination[r - 3] < n) {
+            int third = completeSet(buffer, combination);
+            if (third >= 0 && third != card && cards.contains(third) && third > buffer[combination[r - 3]]) {
+                int[] set = new int[r];
+                for (int i = 0; i < r - 1; ++i)
+                    set[i] = buffer[combination[i]];
+                set[r - 1] = third;
+                Arrays.sort(set);
+                action.accept(set);
+                ++found;
+            }
+
+            // generate next combination of r - 2 other cards in lexicographic order
+            int t = r - 3;
+            while (t != 0 && combination[t] == n - r + 2 + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 2; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return found;
+    }
+
+    @Override
+    public int setSize() {
+        return config.featureSize;
+    }
+
+    /**
+     * Unboxes a collection of cards.
+     * @param deck - a collection of cards (may not include null objects).
+     * @return     - the card ids, in the order of the collection.
+     */
+    protected int[] toArray(List<Integer> deck) {
+        int[] cards = new int[deck.size()];
+        int index = 0;
+        for (int card : deck)
+            cards[index++] = card;
+        return cards;
+    }
+
+    /**
+     * Indexes the position of each card in an array of cards.
+     * @param cards - an array of card ids.
+     * @return      - an array of config.deckSize positions (-1 for cards not in the array).
+     */
+    protected int[] positions(int[] cards) {
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < cards.length; ++i)
+            position[cards[i]] = i;
+        return position;
+    }
+
+    /**
+     * Goes over the sets in an array of cards whose first card (in array order) is in the given range of indices,
+     * in the lexicographic order of their positions.
+     * @param cards    - an array of card ids (config.featureSize >= 3).
+     * @param position - the positions of the cards (see positions method).
+     * @param from     - the first index (inclusive) of the range.
+     * @param to       - the last index (exclusive) of the range.
+     * @param action   - called with the (sorted) card ids of each set, returns false to stop the search.
+     * @return         - false iff the search was stopped by the action.
+     */
+    protected boolean forEachSet(int[] cards, int[] position, int from, int to, Predicate<int[]> action) {
+        int n = cards.length;
+        int r = config.featureSize;
+        if (from > n - r) return true;
+
+        // every r - 1 cards determine the only card completing them to a set, so it is enough to go over the
+        // combinations of r - 1 cards (in lexicographic order) and look up the completing card in the deck
+        int[] combination = new int[r - 1];
+        for (int i = 0; i < r - 1; ++i)
+            combination[i] = from + i;
+
+        while (combination[0] < to && combination[r - 2] < n - 1) {
+            int third = completeSet(cards, combination);
+
+            // taking only completions that come later in the deck keeps the order (and uniqueness) of the full scan
+            if (third >= 0 && position[third] > combination[r - 2]) {
+                int[] set = new int[r];
+                for (int i = 0; i < r - 1; ++i)
+                    set[i] = cards[combination[i]];
+                set[r - 1] = third;
+                Arrays.sort(set);
+                if (!action.test(set)) return false;
+            }
+
+            // generate next combination in lexicographic order (the last card of the set is never part of it)
+            int t = r - 2;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the only card that completes the given cards to a legal set. For each feature, the missing value is
+     * the same one if all the cards share it, or the one value none of them has if they are all different
+     * (for 3 cards with features a and b this is (-a-b) mod featureSize).
+     * @param cards       - the cards to choose from.
+     * @param combination - the indices (in cards) of featureSize - 1 cards.
+     * @return            - the card id completing the set, or -1 if the cards cannot be completed to a set.
+     */
+    private int completeSet(int[] cards, int[] combination) {
+        if (completions != null) return completions.third(cards[combination[0]], cards[combination[1]]);
+        return computeCompletion(cards, combination);
+    }
+
+    /**
+     * Computes the only card that completes featureSize - 1 cards to a legal set (without the completion table).
+     * @param cards - the card ids (featureSize - 1 of them).
+     * @return      - the card id completing the set, or -1 if the cards cannot be completed to a set.
+     */
+    public int completeSet(int[] cards) {
+        return computeCompletion(cards, firstCards);
+    }
+
+    private int computeCompletion(int[] cards, int[] combination) {
+        int size = config.featureSize;
+        int allValues = (1 << size) - 1;
+        int third = 0;
+        for (int i = 0; i < config.featureCount; ++i) {
+            int first = featureTable[cards[combination[0]]][i];
+            int seen = 1 << first;
+            boolean sameSame = true;
+            for (int j = 1; j < combination.length; ++j) {
+                int value = featureTable[cards[combination[j]]][i];
+                if (value != first) sameSame = false;
+                seen |= 1 << value;
+            }
+
+            int missing;
+            if (sameSame) missing = first;
+            else if (Integer.bitCount(seen) == combination.length) missing = Integer.numberOfTrailingZeros(allValues & ~seen);
+            else return -1;
+            third = third * size + missing;
+        }
+        return third;
+    }
+
+    /**
+     * A lazy spliterator over the sets in an array of cards, in deck order. It searches one first card at a time,
+     * and splits by handing the first half of its remaining first cards to a new spliterator.
+     */
+    private class SetSpliterator implements Spliterator<int[]> {
+
+        private final int[] cards;
+        private final int[] position;
+
+        /**
+         * The sets found for the last first card that were not consumed yet.
+         */
+        private final Queue<int[]> found = new ArrayDeque<>();
+
+        /**
+         * The next first card (index) to search.
+         */
+        private int next;
+
+        /**
+         * The end (exclusive) of the first cards range of this spliterator.
+         */
+        private final int to;
+
+        SetSpliterator(int[] cards, int[] position, int from, int to) {
+            this.cards = cards;
+            this.position = position;
+            this.next = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            while (found.isEmpty() && next < to)
+                forEachSet(cards, position, next, ++next, found::add);
+            if (found.isEmpty()) return false;
+            action.accept(found.remove());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super int[]> action) {
+            while (!found.isEmpty())
+                action.accept(found.remove());
+            forEachSet(cards, position, next, to, set -> {
+                action.accept(set);
+                return true;
+            });
+            next = to;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (!found.isEmpty() || to - next < 2) return null;
+            int middle = (next + to) >>> 1;
+            SetSpliterator prefix = new SetSpliterator(cards, position, next, middle);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return found.size() + (long) (to - next) * cards.length;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Finds up to count sets by checking every combination of cards (see findSets).
+     */
+    protected List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
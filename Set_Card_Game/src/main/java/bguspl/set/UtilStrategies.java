@@ -0,0 +1,159 @@
+package bguspl.set;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The registry of the set finding strategies (Util implementations) that can be selected with the SetFinder
+ * configuration entry.
+ */
+public final class UtilStrategies {
+
+    /**
+     * The name of the strategy that measures all the others at startup and picks the fastest.
+     */
+    public static final String AUTO = "auto";
+
+    /**
+     * The strategy used when the configured one is unknown.
+     */
+    public static final String DEFAULT = "completion";
+
+    /**
+     * The number of random table-sized hands the calibration searches.
+     */
+    private static final int CALIBRATION_HANDS = 64;
+
+    /**
+     * The maximum number of combinations a naive search of a calibration hand may check.
+     */
+    private static final long CALIBRATION_COMBINATIONS = 1_000_000;
+
+    /**
+     * The number of timed searches per strategy in the calibration (after as many warm-up searches).
+     */
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    /**
+     * The factories of the strategies by name, in registration order.
+     */
+    private static final Map<String, BiFunction<Config, CompletionTable, Util>> strategies = new LinkedHashMap<>();
+
+    static {
+        register("naive", (config, completions) -> new NaiveUtilImpl(config));
+        register("completion", UtilImpl::new);
+        register("parallel", (config, completions) -> new ParallelUtilImpl(config, completions, ForkJoinPool.commonPool()));
+    }
+
+    private UtilStrategies() {}
+
+    /**
+     * Registers a strategy (replacing any strategy registered with the same name).
+     *
+     * @param name    - the name to select the strategy with (in lower case).
+     * @param factory - creates the Util of the strategy from the configuration and the completion table (may be null).
+     */
+    public static synchronized void register(String name, BiFunction<Config, CompletionTable, Util> factory) {
+        strategies.put(name, factory);
+    }
+
+    /**
+     * @return - the names of the registered strategies.
+     */
+    public static synchronized Set<String> names() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(strategies.keySet()));
+    }
+
+    /**
+     * Creates the Util of the configured strategy (config.setFinder).
+     *
+     * @param logger - the logger to report the chosen strategy (and calibration timings) to.
+     * @param config - the game configuration.
+     * @return       - the Util to use.
+     */
+    public static synchronized Util create(Logger logger, Config config) {
+        CompletionTable completions = CompletionTable.load(logger, config);
+        String name = config.setFinder;
+        if (name.equals(AUTO)) {
+            name = calibrate(logger, config, completions);
+        } else if (!strategies.containsKey(name)) {
+            logger.log(Level.WARNING, "unknown set finder " + name + ", using " + DEFAULT + ".");
+            name = DEFAULT;
+        }
+        logger.log(Level.INFO, "using the " + name + " set finder.");
+        return strategies.get(name).apply(config, completions);
+    }
+
+    /**
+     * Times the searches the game runs with every strategy: the first set in the whole deck (is the game over?),
+     * all the sets in random table-sized hands (table hints) and the sets of each card of a hand (the set index).
+     *
+     * @return - the name of the fastest strategy.
+     */
+    private static String calibrate(Logger logger, Config config, CompletionTable completions) {
+        CardSet deck = new CardSet(config.deckSize);
+        for (int card = 0; card < config.deckSize; ++card)
+            deck.add(card);
+
+        int handSize = Math.min(config.tableSize, config.deckSize);
+        while (handSize > config.featureSize && combinations(handSize, config.featureSize) > CALIBRATION_COMBINATIONS)
+            --handSize;
+        List<Integer> cards = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Random random = new Random(0);
+        CardSet[] hands = new CardSet[CALIBRATION_HANDS];
+        for (int i = 0; i < hands.length; ++i) {
+            Collections.shuffle(cards, random);
+            hands[i] = new CardSet(config.deckSize);
+            for (int card : cards.subList(0, handSize))
+                hands[i].add(card);
+        }
+
+        String fastest = DEFAULT;
+        long fastestNanos = Long.MAX_VALUE;
+        for (Map.Entry<String, BiFunction<Config, CompletionTable, Util>> strategy : strategies.entrySet()) {
+            Util util = strategy.getValue().apply(config, completions);
+            for (int round = 0; round < CALIBRATION_ROUNDS; ++round) // warm up
+                search(util, deck, hands);
+
+            long start = System.nanoTime();
+            for (int round = 0; round < CALIBRATION_ROUNDS; ++round)
+                search(util, deck, hands);
+            long nanos = (System.nanoTime() - start) / CALIBRATION_ROUNDS;
+
+            logger.log(Level.INFO, "set finder " + strategy.getKey() + ": " + nanos / 1000 + " us per round of "
+                    + hands.length + " hands of " + handSize + " cards.");
+            if (nanos < fastestNanos) {
+                fastest = strategy.getKey();
+                fastestNanos = nanos;
+            }
+        }
+        return fastest;
+    }
+
+    private static void search(Util util, CardSet deck, CardSet[] hands) {
+        util.findSets(deck, 1, set -> {});
+        for (CardSet hand : hands) {
+            util.findSets(hand, Integer.MAX_VALUE, set -> {});
+            for (int card : hand.toArray())
+                util.findSetsWith(card, hand, set -> {});
+        }
+    }
+
+    private static long combinations(int n, int r) {
+        long combinations = 1;
+        for (int i = 0; i < r; ++i)
+            combinations = combinations * (n - i) / (i + 1);
+        return combinations;
+    }
+}
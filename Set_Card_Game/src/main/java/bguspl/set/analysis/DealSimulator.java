@@ -0,0 +1,321 @@
+package bguspl.set.analysis;
+
+import bguspl.set.Config;
+import bguspl.set.UtilImpl;
+
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * A Monte Carlo simulator of the dealing in the game, without player or dealer threads, sleeps or UI.
+ * It deals the way Dealer.placeCardsOnTable does (random cards from the deck into the empty slots) and estimates:
+ * 1. The probability that a freshly dealt table (config.tableSize cards) has no set.
+ * 2. What happens over whole games, in which a random set on the table is taken every turn, the table is refilled,
+ *    and the dealer reshuffles whenever the table has no set (as the turn timeout does) until no set is left.
+ * Every worker has its own SplittableRandom and buffers, so the inner loops allocate nothing.
+ * Note: only decks of 3-card sets (FeatureSize=3) are supported.
+ */
+public class DealSimulator {
+
+    /**
+     * The statistics gathered by a simulation.
+     */
+    public static final class Result {
+
+        /**
+         * The number of fresh tables dealt, and how many of them had no set.
+         */
+        public long deals, dealsWithoutSet;
+
+        /**
+         * The number of games played, and the number of sets taken, reshuffles, and refills (tables completed
+         * after a set was taken) in them.
+         */
+        public long games, sets, reshuffles, refills;
+
+        /**
+         * The number of refills after which the table had no set.
+         */
+        public long refillsWithoutSet;
+
+        void add(Result other) {
+            deals += other.deals;
+            dealsWithoutSet += other.dealsWithoutSet;
+            games += other.games;
+            sets += other.sets;
+            reshuffles += other.reshuffles;
+            refills += other.refills;
+            refillsWithoutSet += other.refillsWithoutSet;
+        }
+
+        public double noSetProbability() {
+            return deals == 0 ? 0 : (double) dealsWithoutSet / deals;
+        }
+
+        public double reshufflesPerGame() {
+            return games == 0 ? 0 : (double) reshuffles / games;
+        }
+
+        public double setsPerGame() {
+            return games == 0 ? 0 : (double) sets / games;
+        }
+
+        public double noSetAfterRefillProbability() {
+            return refills == 0 ? 0 : (double) refillsWithoutSet / refills;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("P(no set in a fresh table) = %.5f (%d deals), per game: %.2f sets, %.2f reshuffles, "
+                            + "P(no set after a refill) = %.5f (%d games)", noSetProbability(), deals, setsPerGame(),
+                    reshufflesPerGame(), noSetAfterRefillProbability(), games);
+        }
+    }
+
+    /**
+     * Decks up to this size get a precomputed table of the card completing each pair.
+     */
+    private static final int MAX_COMPLETION_TABLE_DECK = 1024;
+
+    private final int deckSize;
+    private final int tableSize;
+
+    /**
+     * Completes the pairs of cards of large decks.
+     */
+    private final UtilImpl util;
+
+    /**
+     * The card completing each pair of cards (completions[a * deckSize + b]), null for large decks.
+     */
+    private final int[] completions;
+
+    public DealSimulator(Config config) {
+        if (config.featureSize != 3)
+            throw new IllegalArgumentException("only 3-card sets are supported (FeatureSize=" + config.featureSize + ")");
+        deckSize = config.deckSize;
+        tableSize = config.tableSize;
+        util = new UtilImpl(config);
+
+        completions = deckSize <= MAX_COMPLETION_TABLE_DECK ? new int[deckSize * deckSize] : null;
+        int[] pair = new int[2];
+        for (pair[0] = 0; completions != null && pair[0] < deckSize; ++pair[0])
+            for (pair[1] = 0; pair[1] < deckSize; ++pair[1])
+                completions[pair[0] * deckSize + pair[1]] = util.completeSet(pair);
+    }
+
+    /**
+     * Runs a simulation split evenly between workers.
+     *
+     * @param deals   - the number of fresh tables to deal.
+     * @param games   - the number of whole games to play.
+     * @param workers - the number of workers (run on the common fork/join pool).
+     * @param seed    - the seed of the random generators (the same seed and workers give the same result).
+     * @return        - the statistics of all the workers together.
+     */
+    public Result run(long deals, long games, int workers, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        Worker[] all = new Worker[workers];
+        for (int i = 0; i < workers; ++i)
+            all[i] = new Worker(root.split());
+
+        IntStream.range(0, workers).parallel().forEach(i -> {
+            all[i].deal(deals / workers + (i < deals % workers ? 1 : 0));
+            all[i].play(games / workers + (i < games % workers ? 1 : 0));
+        });
+
+        Result result = new Result();
+        for (Worker worker : all)
+            result.add(worker.result);
+        return result;
+    }
+
+    /**
+     * Counts the sets among some cards the way the simulation does.
+     *
+     * @param cards - the cards (at most deckSize of them).
+     * @return      - the number of sets among the cards.
+     */
+    int countSets(int[] cards) {
+        return new Worker(new SplittableRandom(0)).countSets(cards, cards.length, -1);
+    }
+
+    /**
+     * The state of a single worker (not thread safe).
+     */
+    private final class Worker {
+
+        private final SplittableRandom random;
+        private final Result result = new Result();
+
+        /**
+         * The deck (the first deckCount cards of the array are the cards in it).
+         */
+        private final int[] deck = new int[deckSize];
+        private int deckCount;
+
+        /**
+         * The cards on the table (the first tableCount cards of the array).
+         */
+        private final int[] table = new int[tableSize];
+        private int tableCount;
+
+        /**
+         * The index of each card in the array being searched for sets (valid only where stamp equals generation).
+         */
+        private final int[] index = new int[deckSize];
+        private final int[] stamp = new int[deckSize];
+        private int generation;
+
+        /**
+         * The cards still in the game (deck plus table), used to check for the end of a game.
+         */
+        private final int[] remaining = new int[deckSize];
+
+        /**
+         * The pair of cards being completed, for decks without a completion table.
+         */
+        private final int[] pair = new int[2];
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+            for (int card = 0; card < deckSize; ++card)
+                deck[card] = card;
+        }
+
+        /**
+         * Deals fresh tables from a full deck (a partial Fisher-Yates shuffle of the first tableSize cards).
+         */
+        void deal(long deals) {
+            int cards = Math.min(tableSize, deckSize);
+            for (long deal = 0; deal < deals; ++deal) {
+                for (int i = 0; i < cards; ++i) {
+                    int j = i + random.nextInt(deckSize - i);
+                    int card = deck[j];
+                    deck[j] = deck[i];
+                    deck[i] = card;
+                }
+                ++result.deals;
+                if (countSets(deck, cards, -1) == 0) ++result.dealsWithoutSet;
+            }
+        }
+
+        /**
+         * Plays whole games.
+         */
+        void play(long games) {
+            for (long game = 0; game < games; ++game) {
+                deckCount = deckSize;
+                for (int card = 0; card < deckSize; ++card)
+                    deck[card] = card;
+                tableCount = 0;
+                fillTable();
+
+                while (true) {
+                    int sets = countSets(table, tableCount, -1);
+                    if (sets == 0) {
+                        if (!remainingHasSet()) break;
+                        ++result.reshuffles;
+                        while (tableCount > 0)
+                            returnToDeck(table[--tableCount]);
+                        fillTable();
+                        continue;
+                    }
+
+                    // take a random set off the table and refill it
+                    countSets(table, tableCount, random.nextInt(sets));
+                    ++result.sets;
+                    fillTable();
+                    ++result.refills;
+                    if (countSets(table, tableCount, -1) == 0) ++result.refillsWithoutSet;
+                }
+                ++result.games;
+            }
+        }
+
+        private void fillTable() {
+            while (tableCount < tableSize && deckCount > 0) {
+                int k = random.nextInt(deckCount);
+                int card = deck[k];
+                deck[k] = deck[--deckCount];
+                table[tableCount++] = card;
+            }
+        }
+
+        private void returnToDeck(int card) {
+            deck[deckCount++] = card;
+        }
+
+        private int third(int a, int b) {
+            if (completions != null) return completions[a * deckSize + b];
+            pair[0] = a;
+            pair[1] = b;
+            return util.completeSet(pair);
+        }
+
+        private void takeSet(int a, int b, int c) {
+            for (int i = tableCount - 1; i >= 0; --i)
+                if (table[i] == a || table[i] == b || table[i] == c)
+                    table[i] = table[--tableCount];
+        }
+
+        /**
+         * Counts the sets among the first count cards of an array, and optionally takes one of them off the table.
+         *
+         * @param take - the index (in search order) of the set to take off the table, or -1 to only count.
+         * @return     - the number of sets (up to and including the taken one, if any).
+         */
+        private int countSets(int[] cards, int count, int take) {
+            ++generation;
+            for (int i = 0; i < count; ++i) {
+                stamp[cards[i]] = generation;
+                index[cards[i]] = i;
+            }
+
+            int sets = 0;
+            for (int i = 0; i < count; ++i)
+                for (int j = i + 1; j < count; ++j) {
+                    int third = third(cards[i], cards[j]);
+                    if (stamp[third] == generation && index[third] > j) {
+                        if (sets == take) {
+                            takeSet(cards[i], cards[j], third);
+                            return sets + 1;
+                        }
+                        ++sets;
+                    }
+                }
+            return sets;
+        }
+
+        private boolean remainingHasSet() {
+            int count = 0;
+            for (int i = 0; i < deckCount; ++i)
+                remaining[count++] = deck[i];
+            for (int i = 0; i < tableCount; ++i)
+                remaining[count++] = table[i];
+            return countSets(remaining, count, -1) > 0;
+        }
+    }
+
+    /**
+     * Simulates the configured game and prints the statistics.
+     * Usage: java -cp Set_Card_Game.jar bguspl.set.analysis.DealSimulator [deals] [games] [workers] [seed]
+     */
+    public static void main(String[] args) {
+        Logger logger = Logger.getLogger("DealSimulator");
+        Config config = new Config(logger, "config.properties");
+        long deals = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        Result result = new DealSimulator(config).run(deals, games, workers, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.log(Level.INFO, config.rows + "x" + config.columns + " table: " + result);
+        logger.log(Level.INFO, String.format("%.2f s with %d workers", seconds, workers)
+                + (games == 0 ? String.format(" (%.0f deals per second per worker)", deals / seconds / workers) : ""));
+    }
+}
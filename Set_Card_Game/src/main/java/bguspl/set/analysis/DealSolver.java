@@ -0,0 +1,235 @@
+package bguspl.set.analysis;
+
+import bguspl.set.CardSet;
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilStrategies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Solves deals offline: given the order of the deck, explores every way the game can be played (the dealer fills the
+ * table from the deck in order, and any set on the table may be taken next) until a table with no set is reached.
+ * For every deal it computes the maximum number of sets that can be taken, and the expected number of sets taken
+ * when each move picks one of the sets on the table uniformly at random.
+ * The search runs on a fork/join pool and shares a transposition table between the workers, keyed by the cards that
+ * are still in the game (the table plus the position in the deck), whose size is capped to bound the memory used.
+ * Note: the search is exhaustive, so its time grows exponentially with the deck. Full solves are practical for small
+ * variants (e.g. FeatureCount=3) or for a prefix of a larger deck.
+ */
+public class DealSolver {
+
+    /**
+     * The result of solving a position.
+     */
+    public static final class Outcome {
+
+        /**
+         * The maximum number of sets that can still be taken.
+         */
+        public final int maxSets;
+
+        /**
+         * The expected number of sets taken when every move picks a uniformly random set.
+         */
+        public final double expectedSets;
+
+        Outcome(int maxSets, double expectedSets) {
+            this.maxSets = maxSets;
+            this.expectedSets = expectedSets;
+        }
+
+        @Override
+        public String toString() {
+            return "max sets: " + maxSets + ", expected sets: " + String.format("%.2f", expectedSets);
+        }
+    }
+
+    /**
+     * Positions closer than this to the start are searched as separate fork/join tasks (deeper ones sequentially).
+     */
+    private static final int FORK_DEPTH = 4;
+
+    private final Util util;
+    private final int deckSize;
+    private final int tableSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * The maximum number of positions kept in the transposition table.
+     */
+    private final int maxCachedPositions;
+
+    public DealSolver(Util util, int deckSize, int tableSize, int maxCachedPositions, ForkJoinPool pool) {
+        this.util = util;
+        this.deckSize = deckSize;
+        this.tableSize = tableSize;
+        this.maxCachedPositions = maxCachedPositions;
+        this.pool = pool;
+    }
+
+    /**
+     * Solves a deal.
+     *
+     * @param order - the order of the cards in the deck (the first tableSize cards are dealt first).
+     * @return      - the outcome of the deal.
+     */
+    public Outcome solve(int[] order) {
+        CardSet table = new CardSet(deckSize);
+        int next = 0;
+        while (next < order.length && table.size() < tableSize)
+            table.add(order[next++]);
+        return pool.invoke(new SolveTask(new Search(order), table, next, 0));
+    }
+
+    /**
+     * The state shared by all the tasks of a single deal.
+     */
+    private final class Search {
+
+        private final int[] order;
+        private final ConcurrentHashMap<Position, Outcome> solved = new ConcurrentHashMap<>();
+        private final AtomicInteger cached = new AtomicInteger();
+
+        Search(int[] order) {
+            this.order = order;
+        }
+
+        void cache(Position position, Outcome outcome) {
+            if (cached.get() < maxCachedPositions && solved.putIfAbsent(position, outcome) == null)
+                cached.incrementAndGet();
+        }
+    }
+
+    /**
+     * A position of the game: the cards on the table and the number of cards dealt so far (which, with the fixed deck
+     * order, determine all the cards that are still in the game).
+     */
+    private static final class Position {
+
+        private final int[] cards;
+        private final int next;
+        private final int hash;
+
+        Position(int[] cards, int next) {
+            this.cards = cards;
+            this.next = next;
+            this.hash = 31 * Arrays.hashCode(cards) + next;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Position)) return false;
+            Position position = (Position) other;
+            return hash == position.hash && next == position.next && Arrays.equals(cards, position.cards);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final class SolveTask extends RecursiveTask<Outcome> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final CardSet table;
+        private final int next;
+        private final int depth;
+
+        SolveTask(Search search, CardSet table, int next, int depth) {
+            this.search = search;
+            this.table = table;
+            this.next = next;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Outcome compute() {
+            int[] cards = table.toArray();
+            Position position = new Position(cards, next);
+            Outcome outcome = search.solved.get(position);
+            if (outcome != null) return outcome;
+
+            List<int[]> sets = new ArrayList<>();
+            util.findSets(cards, Integer.MAX_VALUE, sets::add);
+            if (sets.isEmpty()) {
+                outcome = new Outcome(0, 0);
+            } else {
+                List<SolveTask> children = new ArrayList<>(sets.size());
+                for (int[] set : sets)
+                    children.add(child(set));
+
+                int maxSets = 0;
+                double expectedSets = 0;
+                if (depth < FORK_DEPTH) invokeAll(children);
+                for (SolveTask child : children) {
+                    Outcome childOutcome = depth < FORK_DEPTH ? child.join() : child.compute();
+                    maxSets = Math.max(maxSets, childOutcome.maxSets);
+                    expectedSets += childOutcome.expectedSets;
+                }
+                outcome = new Outcome(1 + maxSets, 1 + expectedSets / sets.size());
+            }
+            search.cache(position, outcome);
+            return outcome;
+        }
+
+        /**
+         * Takes a set off the table and refills the table from the deck.
+         */
+        private SolveTask child(int[] set) {
+            CardSet childTable = new CardSet(deckSize);
+            for (int card : table.toArray())
+                childTable.add(card);
+            for (int card : set)
+                childTable.remove(card);
+            int childNext = next;
+            while (childNext < search.order.length && childTable.size() < tableSize)
+                childTable.add(search.order[childNext++]);
+            return new SolveTask(search, childTable, childNext, depth + 1);
+        }
+    }
+
+    /**
+     * Solves random deals of the configured game and prints the outcomes.
+     * Usage: java -cp Set_Card_Game.jar bguspl.set.analysis.DealSolver [deals] [maxCachedPositions] [seed] [cards]
+     * (cards is the number of cards of each shuffled deck to deal, the whole deck by default).
+     */
+    public static void main(String[] args) {
+        Logger logger = Logger.getLogger("DealSolver");
+        Config config = new Config(logger, "config.properties");
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxCachedPositions = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        int cards = args.length > 3 ? Math.min(Integer.parseInt(args[3]), config.deckSize) : config.deckSize;
+
+        DealSolver solver = new DealSolver(UtilStrategies.create(logger, config), config.deckSize, config.tableSize,
+                maxCachedPositions, ForkJoinPool.commonPool());
+        double totalMax = 0, totalExpected = 0;
+        for (int deal = 0; deal < deals; ++deal) {
+            List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+            Collections.shuffle(deck, random);
+            long start = System.currentTimeMillis();
+            Outcome outcome = solver.solve(deck.stream().limit(cards).mapToInt(Integer::intValue).toArray());
+            logger.log(Level.INFO, "deal " + deal + ": " + outcome + " (" + (System.currentTimeMillis() - start) + " ms)");
+            totalMax += outcome.maxSets;
+            totalExpected += outcome.expectedSets;
+        }
+        logger.log(Level.INFO, config.rows + "x" + config.columns + " table, " + deals + " deals: average max sets "
+                + String.format("%.2f", totalMax / deals) + ", average expected sets " + String.format("%.2f", totalExpected / deals));
+    }
+}
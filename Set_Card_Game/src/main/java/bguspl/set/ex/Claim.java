@@ -0,0 +1,112 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable claim a player sends the dealer: the cards the player believes form a legal set, the slots they were
+ * taken from, and the time the claim was made.
+ */
+public final class Claim {
+
+    /**
+     * Orders claims by the time they were made (ties are broken by player id, so the order is always deterministic).
+     */
+    public static final Comparator<Claim> BY_ARRIVAL =
+            Comparator.comparingLong((Claim claim) -> claim.arrivalNanos).thenComparingInt(claim -> claim.player);
+
+    /**
+     * The id of the player that made the claim.
+     */
+    public final int player;
+
+    /**
+     * The claimed cards (-1 marks a slot that was empty when the claim was made).
+     */
+    private final int[] cards;
+
+    /**
+     * The slots the claimed cards were taken from (slots[i] held cards[i]).
+     */
+    private final int[] slots;
+
+    /**
+     * The version each slot had when the player placed its token on it (versions[i] is the version of slots[i]).
+     */
+    private final long[] versions;
+
+    /**
+     * The System.nanoTime() at which the claim was made.
+     */
+    public final long arrivalNanos;
+
+    /**
+     * The class constructor.
+     *
+     * @param player       - the id of the player making the claim.
+     * @param cards        - the claimed cards.
+     * @param slots        - the slots of the claimed cards.
+     * @param versions     - the versions of the slots when the tokens were placed on them.
+     * @param arrivalNanos - the System.nanoTime() at which the claim was made.
+     */
+    public Claim(int player, int[] cards, int[] slots, long[] versions, long arrivalNanos) {
+        if (cards.length != slots.length || versions.length != slots.length)
+            throw new IllegalArgumentException("got " + cards.length + " cards, " + slots.length + " slots and "
+                    + versions.length + " versions");
+        this.player = player;
+        this.cards = cards.clone();
+        this.slots = slots.clone();
+        this.versions = versions.clone();
+        this.arrivalNanos = arrivalNanos;
+    }
+
+    /**
+     * @return - a copy of the claimed cards.
+     */
+    public int[] cards() {
+        return cards.clone();
+    }
+
+    /**
+     * @return - a copy of the slots of the claimed cards.
+     */
+    public int[] slots() {
+        return slots.clone();
+    }
+
+    /**
+     * @return - the number of claimed cards.
+     */
+    public int size() {
+        return cards.length;
+    }
+
+    /**
+     * @param i - the index of the card in the claim.
+     * @return - the i-th claimed card.
+     */
+    public int card(int i) {
+        return cards[i];
+    }
+
+    /**
+     * @param i - the index of the card in the claim.
+     * @return - the slot of the i-th claimed card.
+     */
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @param i - the index of the card in the claim.
+     * @return - the version of the slot of the i-th claimed card when the token was placed on it.
+     */
+    public long version(int i) {
+        return versions[i];
+    }
+
+    @Override
+    public String toString() {
+        return "Claim{player=" + player + ", cards=" + Arrays.toString(cards) + ", slots=" + Arrays.toString(slots) + "}";
+    }
+}
@@ -1,18 +1,25 @@
 package bguspl.set.ex;
 
+import bguspl.set.CardSet;
 import bguspl.set.Config;
+import bguspl.set.Deck;
 import bguspl.set.Env;
+import bguspl.set.SetIndex;
+import bguspl.set.Threads;
+import bguspl.set.TimerWheel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.lang.Math;
 
 /**
@@ -32,9 +39,15 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The number of legal sets among the cards still in the game (the deck plus the table). It only changes when
+     * the cards of a legal set leave the game, so checking for the end of the game takes O(1).
+     */
+    private final SetIndex setsInPlay;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -48,22 +61,56 @@ public class Dealer implements Runnable {
 
     //////////////////////// FIELDS ADDED ////////////////////////
 
-    protected Queue<int[]> queueOfSets = new ConcurrentLinkedQueue<>(); //queue of sets
+    // the dealer's mailbox: claims from the players, ticks from the timer wheel and termination requests
+    private final Mailbox mailbox;
 
-    protected Queue<Integer> queueOfPlayersId = new ConcurrentLinkedQueue<>(); //queue of sets and player id
+    // the messages received since the last time the claims were checked (only touched by the dealer thread)
+    private final List<Message> inbox = new ArrayList<>();
 
     // The thread representing the dealer
     private Thread dealerThread;
 
-    protected Object lock = new Object(); //lock object for the dealer threads
-
     protected int maxScore;
 
+    // the random generator used to draw cards from the deck and to pick empty slots (seeded by the config)
+    private final Random random;
+
+    /**
+     * The refresh rate of the countdown display during the warning period (it shows hundredths of a second).
+     */
+    private static final long WARNING_DISPLAY_MILLIS = 10;
+
+    /**
+     * The pending wake-up for the next deadline (cancelled whenever an event wakes the dealer up earlier).
+     */
+    private TimerWheel.Timeout nextWakeUp;
+
+    /**
+     * The time each player's freeze ends (0 if the player is not frozen). Only the dealer thread touches it.
+     */
+    private final long[] freezeEnd;
+
+    /**
+     * Picks the next layout while the dealer waits out the table delay of a reshuffle (its thread starts lazily).
+     */
+    private final ExecutorService layoutExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "layout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        freezeEnd = new long[players.length];
+        mailbox = new Mailbox(players.length + 4); // at most one claim per player, plus a few ticks and a termination
+        random = new Random(env.config.deckSeed);
+        env.logger.log(Level.INFO, "dealing with deck seed " + env.config.deckSeed);
+        deck = new Deck(env.config.deckSize, random);
+        setsInPlay = new SetIndex(env.util, env.config.deckSize, false);
+        for (int card : deck.toArray())
+            setsInPlay.add(card);
     }
 
     /**
@@ -78,10 +125,12 @@ public class Dealer implements Runnable {
         // Set the dealer and player threads for each player
         for (int i = 0; i < players.length; i++) {
             players[i].setDealer(this);
-            Thread playerThread = new Thread(players[i], "player " + players[i].getId());
+            Thread playerThread = Threads.newThread(players[i], "player " + players[i].getId(), env.config.virtualThreads);
             playerThread.start();
         }
 
+        reshuffle(); // the first deal is a reshuffle of an empty table
+
         while (!shouldFinish()) {
             placeCardsOnTable();
             
@@ -91,9 +140,17 @@ public class Dealer implements Runnable {
             timerLoop();
 
             //updateTimerDisplay(false);
-            removeAllCardsFromTable();
+            if (shouldFinish())
+                removeAllCardsFromTable();
+            else
+                reshuffle();
         }
         announceWinners();
+
+        // the players (and their ai threads) stop as well, in reverse order of creation
+        for (int i = players.length - 1; i >= 0; i--)
+            players[i].terminate();
+        layoutExecutor.shutdown();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -104,17 +161,24 @@ public class Dealer implements Runnable {
        
         while (!terminate && System.currentTimeMillis() < reshuffleTime) {
 
+            // no need to wait for the timeout if no set can be found on the table
+            if (isDeadTable()){
+                env.logger.log(Level.INFO, "no legal set on the table and none can be dealt, reshuffling early");
+                break;
+            }
+
             sleepUntilWokenOrTimeout();
 
             // checks if there is a set to check in the queue
             checkQueueOfSets();
 
-            // checks if there is a legal set on the table
-            if (env.util.findSets(deck, 1).size() == 0){
+            // checks if there is a legal set left in the game
+            if (!setsInPlay.hasSet()){
                 terminate();
             }
 
             updateTimerDisplay(true);
+            updateFreezeDisplays();
             //removeCardsFromTable();
             placeCardsOnTable();
         }
@@ -126,6 +190,27 @@ public class Dealer implements Runnable {
     public void terminate() {
         // TODO implement
         terminate = true;
+        mailbox.send(Message.terminate());
+    }
+
+    /**
+     * Hands a claim over to the dealer and wakes the dealer up to check it.
+     *
+     * @param claim - the claim to check.
+     */
+    public void submit(Claim claim) {
+        if (!mailbox.send(Message.claim(claim))) {
+            env.logger.log(Level.SEVERE, "the dealer's mailbox is full, dismissing " + claim);
+            players[claim.player].deliver(Message.verdict(claim, Message.DISMISSED));
+        }
+    }
+
+    /**
+     * Wakes the dealer up for a deadline (sent by the timer wheel; dropped if the mailbox is full, since the dealer
+     * is awake then anyway).
+     */
+    public void wakeUp() {
+        mailbox.send(Message.tick());
     }
 
     /**
@@ -134,7 +219,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || !setsInPlay.hasSet();
     }
 
     /**
@@ -142,12 +227,11 @@ public class Dealer implements Runnable {
      */
     private void removeCardsFromTable(List<Integer> cards) { // we changed the method signature to get a list of cards to remove
         // TODO implement
-        synchronized(lock){
-            for (int i = 0; i < cards.size(); i++) {
-                int card = cards.get(i);
-                int slot = table.cardToSlot[card];
-                table.removeCard(slot);
-            }
+        for (int i = 0; i < cards.size(); i++) {
+            int card = cards.get(i);
+            int slot = table.cardToSlot[card];
+            table.removeCard(slot);
+            setsInPlay.remove(card); // the card leaves the game
         }
     }
 
@@ -156,44 +240,115 @@ public class Dealer implements Runnable {
      */
     private void placeCardsOnTable() {
         // TODO implement
-        synchronized(lock){
-          
-            if (deck.size() != 0){
-            
-                //finding an empty random slot
-                List<Integer> emptySlots = findEmptySlot();
-
-                for (int i = emptySlots.size()-1; i >= 0; i--) {
-                    Collections.shuffle(emptySlots);
-                    int slot = emptySlots.remove(i);
-                    
-                    Collections.shuffle(deck);
-                    
-                    if (deck.size() != 0){ // if the deck is not empty
-                        int card = deck.remove(0);
-                        table.placeCard(card,slot);
-
-                        System.out.println("card: " + card + " slot: " + slot);
-                    }
-
-                }   
+
+        if (!deck.isEmpty()){
+        
+            //finding the empty slots, and filling them in a random order
+            int[] emptySlots = findEmptySlot();
+            CardSet onTable = new CardSet(env.config.deckSize);
+            for (Integer card : table.slotToCard)
+                if (card != null)
+                    onTable.add(card);
+
+            for (int left = emptySlots.length; left > 0 && !deck.isEmpty(); left--) {
+                int pick = random.nextInt(left);
+                int slot = emptySlots[pick];
+                emptySlots[pick] = emptySlots[left - 1];
+
+                int card = drawCard(onTable);
+                onTable.add(card);
+                table.placeCard(card,slot);
+
+                System.out.println("card: " + card + " slot: " + slot);
+            }   
+        }
+    }
+
+    /**
+     * Draws the next card to deal. If sets must be guaranteed and there is no legal set on the table, a card that
+     * completes a legal set with the cards on the table is preferred.
+     *
+     * @param onTable - the cards on the table.
+     * @return - the card drawn.
+     */
+    private int drawCard(CardSet onTable) {
+        if (env.config.guaranteeSet && !table.hasSet()) {
+            int card = findCompletingCard(onTable);
+            if (card >= 0) {
+                deck.remove(card);
+                return card;
             }
         }
+        return deck.draw();
+    }
+
+    /**
+     * Looks for a card in the deck that completes a legal set with the cards on the table, starting at a random card.
+     *
+     * @param onTable - the cards on the table.
+     * @return - a completing card, or -1 if there is none.
+     */
+    private int findCompletingCard(CardSet onTable) {
+        int size = deck.size();
+        int start = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int card = deck.get((start + i) % size);
+            if (env.util.findSetsWith(card, onTable, set -> {}) > 0)
+                return card;
+        }
+        return -1;
+    }
+
+    /**
+     * @return - true iff sets must be guaranteed, there is no legal set on the table, and the deck still has cards
+     *           (so a reshuffle may bring one back).
+     */
+    private boolean isDeadTable() {
+        return env.config.guaranteeSet && !table.hasSet() && !deck.isEmpty();
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until an event arrives or the next countdown deadline is due, whichever comes first (the deadline is
+     * registered with the timer wheel, which sends a tick to the mailbox when it expires).
      */
     private void sleepUntilWokenOrTimeout() {
         // TODO implement
+        long timeout = nextDeadline() - System.currentTimeMillis();
+        if (nextWakeUp != null)
+            nextWakeUp.cancel();
+        nextWakeUp = timeout > 0 ? env.timers.schedule(timeout, TimeUnit.MILLISECONDS, this::wakeUp) : null;
         try {
-            //System.out.println("Thread " + Thread.currentThread().getName() + " is sleeping for tableDelayMillis");
-            Thread.sleep(env.config.tableDelayMillis);
-                } catch (InterruptedException exception) {
-                    System.out.println("Thread " + Thread.currentThread().getName() + " interrupted.");
+            Message message = timeout > 0 ? mailbox.receive() : mailbox.poll();
+            if (message != null) {
+                env.logger.log(Level.FINE, "dealer woke up " + (System.nanoTime() - message.sentNanos) / 1000 + " us after a " + message.kind + " was sent");
+                inbox.add(message);
+                mailbox.drainTo(inbox);
+            }
+        } catch (InterruptedException exception) {
+            System.out.println("Thread " + Thread.currentThread().getName() + " interrupted.");
         }
     }
 
+    /**
+     * Computes when the countdown display changes next: the next whole second, the start of the warning period, or
+     * the reshuffle itself. During the warning period the display is refreshed every WARNING_DISPLAY_MILLIS. The
+     * freeze displays of frozen players are taken into account as well (they show whole seconds).
+     *
+     * @return - the next time (in milliseconds) the dealer has to wake up even if no event arrives.
+     */
+    private long nextDeadline() {
+        long now = System.currentTimeMillis();
+        long remaining = reshuffleTime - now;
+        if (remaining <= env.config.turnTimeoutWarningMillis)
+            return Math.min(reshuffleTime, now + WARNING_DISPLAY_MILLIS);
+        long nextSecond = now + remaining % 1000 + 1; // the displayed seconds drop just after a whole second passes
+        long deadline = Math.min(nextSecond, reshuffleTime - env.config.turnTimeoutWarningMillis);
+        for (long end : freezeEnd)
+            if (end != 0)
+                deadline = Math.min(deadline, end <= now ? now : Math.min(end, now + (end - now) % 1000 + 1));
+        return deadline;
+    }
+
     /**
      * Reset and/or update the countdown and the countdown display.
      */
@@ -210,15 +365,77 @@ public class Dealer implements Runnable {
      */
     private void removeAllCardsFromTable() {
         // TODO implement
-        synchronized(lock){
-            env.ui.removeTokens();
-            for (int i=0; i<env.config.tableSize; i++){  
+        env.ui.removeTokens();
+        for (int i=0; i<env.config.tableSize; i++){  
+            if (table.slotToCard[i] != null){
+                deck.add(table.slotToCard[i]); // the card goes back to the deck
                 table.removeCard(i);
             }
         }
 
     }
 
+    /**
+     * Replaces the cards on the table with a new layout. The layout is picked on another thread from a snapshot of
+     * the deck and the table while the dealer waits out the table delay, and then the table swaps all the cards at
+     * once, so a reshuffle costs a single table delay instead of one per card removed and placed.
+     */
+    private void reshuffle() {
+        long start = System.currentTimeMillis();
+        int[] onTable = Arrays.stream(table.slotToCard).filter(card -> card != null).mapToInt(card -> card).toArray();
+        int[] pool = deck.toArray();
+        pool = Arrays.copyOf(pool, pool.length + onTable.length);
+        System.arraycopy(onTable, 0, pool, pool.length - onTable.length, onTable.length);
+
+        final int[] snapshot = pool;
+        final long seed = random.nextLong();
+        CompletableFuture<int[]> nextLayout =
+                CompletableFuture.supplyAsync(() -> nextLayout(snapshot, seed), layoutExecutor);
+
+        env.ui.removeTokens();
+        for (int card : onTable)
+            deck.add(card); // the cards go back to the deck
+
+        for (int card : table.replaceCards(nextLayout))
+            deck.remove(card);
+        env.logger.log(Level.INFO, "reshuffled " + table.countCards() + " cards in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Picks the cards of the next layout in a random order. If sets must be guaranteed, a card completing a legal set
+     * is preferred as long as the layout has none. Runs off the dealer thread, so it only touches its arguments.
+     *
+     * @param pool - the cards to pick from (shuffled in place).
+     * @param seed - the seed of the random picks (drawn from the dealer's generator, so deals can be replayed).
+     * @return - the cards of the layout, one per slot.
+     */
+    private int[] nextLayout(int[] pool, long seed) {
+        Random layoutRandom = new Random(seed);
+        int[] layout = new int[Math.min(env.config.tableSize, pool.length)];
+        CardSet chosen = new CardSet(env.config.deckSize);
+        long sets = 0;
+        int left = pool.length;
+
+        for (int slot = 0; slot < layout.length; slot++) {
+            int pick = -1;
+            if (env.config.guaranteeSet && sets == 0) {
+                int start = layoutRandom.nextInt(left);
+                for (int i = 0; i < left && pick < 0; i++)
+                    if (env.util.findSetsWith(pool[(start + i) % left], chosen, set -> {}) > 0)
+                        pick = (start + i) % left;
+            }
+            if (pick < 0)
+                pick = layoutRandom.nextInt(left);
+
+            int card = pool[pick];
+            pool[pick] = pool[--left];
+            sets += env.util.findSetsWith(card, chosen, set -> {});
+            chosen.add(card);
+            layout[slot] = card;
+        }
+        return layout;
+    }
+
     /**
      * Check who is/are the winner/s and displays them.
      */
@@ -242,29 +459,28 @@ public class Dealer implements Runnable {
 
     ///////////////////////////////// new methodes /////////////////////////////////
 
-    //finds an empty slot on the table
-    private List<Integer> findEmptySlot(){
-        List<Integer> emptySlots = new ArrayList<Integer>();
+    //finds the empty slots on the table
+    private int[] findEmptySlot(){
+        int[] emptySlots = new int[env.config.tableSize];
+        int count = 0;
         for (int i = 0; i < env.config.tableSize; i++) {
             if (table.slotToCard[i] == null){
-                emptySlots.add(i);
+                emptySlots[count++] = i;
             }
         }
-        return emptySlots;
+        return Arrays.copyOf(emptySlots, count);
     }
 
     //checks if the cards are a set
-    public boolean checkSet(int playerId, int[] cards){
+    public boolean checkSet(Claim claim){
+        int playerId = claim.player;
+        int[] cards = claim.cards();
         boolean isSet = env.util.testSet(cards);
         System.out.println("Dealer: checkSet, isSet: " + isSet);
 
         if (isSet){
             removeCardsFromTable(Arrays.stream(cards).boxed().collect(Collectors.toList()));
-            players[playerId].setAnsFromCheckSet(1);
-            
-            synchronized(players[playerId].getPlayerThread()){
-                players[playerId].getPlayerThread().interrupt();
-            }
+            answer(claim, Message.LEGAL);
 
             updateTimerDisplayForPlayer(playerId, isSet);
             
@@ -274,13 +490,7 @@ public class Dealer implements Runnable {
             //updateTimerDisplay(isSet);
 
         } else {
-            players[playerId].setAnsFromCheckSet(-1);
-
-            synchronized(players[playerId].getPlayerThread()){
-                System.out.println("Dealer: checkSet, notify the player");
-                players[playerId].getPlayerThread().interrupt();
-            }
-            
+            answer(claim, Message.ILLEGAL);
             updateTimerDisplayForPlayer(playerId, isSet);
 
         }
@@ -288,15 +498,60 @@ public class Dealer implements Runnable {
         return isSet;
     }
 
-    //checks if there is a set to check in the queue
+    //checks all the claims waiting in the queue, in the order they were made
     public void checkQueueOfSets(){
-         if (!queueOfSets.isEmpty() && !queueOfPlayersId.isEmpty()){
-            System.out.println("Dealer: queueOfSets");
-            int playerID = queueOfPlayersId.remove();
-            int[] set = queueOfSets.remove();
-            System.out.println("set: " + table.cardToSlot[set[0]] + " " + table.cardToSlot[set[1]] + " " + table.cardToSlot[set[2]]);
-            checkSet(playerID, set);
-            }
+        List<Claim> batch = new ArrayList<>();
+        for (Message message : inbox)
+            if (message.kind == Message.Kind.CLAIM)
+                batch.add(message.claim);
+        inbox.clear();
+        if (batch.isEmpty())
+            return;
+
+        env.logger.log(Level.FINE, "checking " + batch.size() + " claims");
+        batch.sort(Claim.BY_ARRIVAL);
+        for (Claim claim : batch) {
+            env.logger.log(Level.FINE, "checking " + claim);
+            // a legal set found earlier removes its cards from the table, which voids the later claims on them
+            if (isCurrent(claim))
+                checkSet(claim);
+            else
+                answer(claim, Message.DISMISSED);
+        }
+    }
+
+    /**
+     * Checks that a claim still describes the table: it has featureSize slots, no slot of the claim has changed since
+     * the player placed its token on it (the slot versions match, so the claimed cards are still there), and no slot
+     * is claimed twice.
+     * This takes O(1) per claimed card, so stale claims are dismissed before testing the set itself.
+     *
+     * @param claim - the claim to check.
+     * @return - true iff the claim can be checked against the rules, false iff it has to be dismissed without a penalty.
+     */
+    private boolean isCurrent(Claim claim) {
+        if (claim.size() != env.config.featureSize)
+            return false;
+        for (int i = 0; i < claim.size(); i++) {
+            if (claim.card(i) < 0 || table.slotVersion(claim.slot(i)) != claim.version(i))
+                return false;
+            for (int j = 0; j < i; j++)
+                if (claim.slot(j) == claim.slot(i))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the dealer's verdict to the mailbox of the player that made a claim.
+     *
+     * @param claim  - the claim answered.
+     * @param answer - Message.LEGAL, Message.ILLEGAL or Message.DISMISSED.
+     */
+    private void answer(Claim claim, int answer) {
+        players[claim.player].deliver(Message.verdict(claim, answer));
+        env.logger.log(Level.FINE, "answered " + answer + " to player " + claim.player + " "
+                + (System.nanoTime() - claim.arrivalNanos) / 1000 + " us after the claim was made");
     }
 
     // getter for the dealer thread
@@ -305,24 +560,36 @@ public class Dealer implements Runnable {
     }
 
     
+    /**
+     * Freezes a player after a verdict. The freeze is only a deadline: the dealer keeps checking the other players'
+     * claims and updates the freeze display whenever it wakes up.
+     *
+     * @param playerId - the id of the player to freeze.
+     * @param isSet    - true iff the player had a legal set (point freeze), false for a penalty freeze.
+     */
     private void updateTimerDisplayForPlayer(int playerId, boolean isSet) {
+        long freezeMillis = isSet ? env.config.pointFreezeMillis : env.config.penaltyFreezeMillis;
+        freezeEnd[playerId] = System.currentTimeMillis() + freezeMillis;
+        updateFreezeDisplay(playerId, System.currentTimeMillis());
+    }
 
-        if (isSet){ // if the player had a legal set
-            long pointFreezeTimer = System.currentTimeMillis()+env.config.pointFreezeMillis;
-            while (System.currentTimeMillis() <= pointFreezeTimer){
-                env.ui.setFreeze(playerId, pointFreezeTimer-System.currentTimeMillis()+1000); // show the player in red for env.config.pointFreezeMillis
-                updateTimerDisplay(true);
-            }
-            env.ui.setFreeze(playerId, pointFreezeTimer-System.currentTimeMillis()); // show the player in black
-
-        } else { // if the player had an illegal set
-            long penaltyFreezeTimer = System.currentTimeMillis()+env.config.penaltyFreezeMillis;
-            while (System.currentTimeMillis() <= penaltyFreezeTimer){
-                env.ui.setFreeze(playerId, penaltyFreezeTimer-System.currentTimeMillis()+1000);  // show the player in red for env.config.penaltyFreezeMillis
-                updateTimerDisplay(true);
-            }
-            env.ui.setFreeze(playerId, penaltyFreezeTimer-System.currentTimeMillis()); // show the player in black
+    /**
+     * Updates the freeze display of every frozen player, and unfreezes the players whose freeze has ended.
+     */
+    private void updateFreezeDisplays() {
+        long now = System.currentTimeMillis();
+        for (int playerId = 0; playerId < freezeEnd.length; playerId++)
+            if (freezeEnd[playerId] != 0)
+                updateFreezeDisplay(playerId, now);
+    }
 
+    private void updateFreezeDisplay(int playerId, long now) {
+        long remaining = freezeEnd[playerId] - now;
+        if (remaining > 0) {
+            env.ui.setFreeze(playerId, remaining + 1000); // show the player in red while the freeze lasts
+        } else {
+            env.ui.setFreeze(playerId, 0); // show the player in black
+            freezeEnd[playerId] = 0;
         }
     }
 
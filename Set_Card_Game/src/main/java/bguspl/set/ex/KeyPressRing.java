@@ -0,0 +1,177 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, allocation free ring of key presses (slots) with a single producer (the ui or the ai thread) and a
+ * single consumer (the player thread). An empty ring parks the consumer instead of letting it spin, and what a full
+ * ring does to a new press depends on the policy.
+ * Note: offer may only be called by the producer thread, poll, await and clear only by the consumer thread.
+ */
+public class KeyPressRing {
+
+    /**
+     * What to do with a key press the ring has no room for.
+     */
+    public enum Policy {
+        BLOCK,          // the producer waits for room (only for producers that may block, i.e. not the ui thread)
+        DROP_NEWEST,    // the new press is dropped
+        COALESCE;       // a press on a slot that is already pending cancels it (two toggles make none), else drop newest
+
+        /**
+         * @param name - the policy name as in the config (block, drop-newest or coalesce).
+         * @return - the policy.
+         */
+        public static Policy parse(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private static final int CANCELLED = -1;
+
+    private final AtomicIntegerArray presses;
+    private final Policy policy;
+
+    /**
+     * The sequence number of the next press to take (written by the consumer only).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The sequence number of the next press to add (written by the producer only).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread parkedConsumer;
+    private volatile Thread parkedProducer;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity - the maximal number of pending key presses.
+     * @param policy   - what to do with a key press when the ring is full.
+     */
+    public KeyPressRing(int capacity, Policy policy) {
+        presses = new AtomicIntegerArray(capacity);
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a key press (producer only).
+     *
+     * @param slot     - the slot pressed.
+     * @param mayBlock - false if the producer must never wait (the ui thread); BLOCK then acts as DROP_NEWEST.
+     * @return - true iff the press was added or coalesced, false iff it was dropped (or the ring is closed).
+     */
+    public boolean offer(int slot, boolean mayBlock) {
+        if (policy == Policy.COALESCE && cancelPending(slot))
+            return true;
+
+        long t = tail.get();
+        while (t - head.get() == presses.length()) {
+            if (policy != Policy.BLOCK || !mayBlock || closed)
+                return false;
+            parkedProducer = Thread.currentThread();
+            if (t - head.get() == presses.length() && !closed)
+                LockSupport.park(this);
+            parkedProducer = null;
+        }
+        presses.set(index(t), slot);
+        tail.set(t + 1);
+
+        Thread consumer = parkedConsumer;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Takes the next key press (consumer only).
+     *
+     * @return - the slot pressed, or -1 if the ring is empty.
+     */
+    public int poll() {
+        long h = head.get();
+        while (h != tail.get()) {
+            int slot = presses.getAndSet(index(h), CANCELLED); // a press coalesced away meanwhile reads as CANCELLED
+            head.set(++h);
+            wakeProducer();
+            if (slot != CANCELLED)
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Parks the consumer until the ring is not empty, or until wake() is called (may also return spuriously).
+     */
+    public void await() {
+        parkedConsumer = Thread.currentThread();
+        if (isEmpty() && !closed)
+            LockSupport.park(this);
+        parkedConsumer = null;
+    }
+
+    /**
+     * Parks the producer until the ring has room for a press, or until it is closed (may also return spuriously).
+     */
+    public void awaitRoom() {
+        parkedProducer = Thread.currentThread();
+        if (size() == presses.length() && !closed)
+            LockSupport.park(this);
+        parkedProducer = null;
+    }
+
+    /**
+     * Drops all the pending key presses (consumer only).
+     */
+    public void clear() {
+        long h = head.get();
+        for (long t = tail.get(); h != t; ) {
+            presses.getAndSet(index(h), CANCELLED); // as in poll, so a coalescing producer cannot cancel a dropped press
+            head.set(++h);
+        }
+        wakeProducer();
+    }
+
+    /**
+     * Closes the ring: parked threads wake up, and the producer never blocks again.
+     */
+    public void close() {
+        closed = true;
+        Thread consumer = parkedConsumer;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+        wakeProducer();
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * @return - the number of pending key presses (coalesced presses included until they are skipped).
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    private boolean cancelPending(int slot) {
+        long t = tail.get();
+        for (long s = head.get(); s < t; s++)
+            if (presses.compareAndSet(index(s), slot, CANCELLED)) // fails if the consumer took it meanwhile
+                return true;
+        return false;
+    }
+
+    private void wakeProducer() {
+        Thread producer = parkedProducer;
+        if (producer != null)
+            LockSupport.unpark(producer);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % presses.length());
+    }
+}
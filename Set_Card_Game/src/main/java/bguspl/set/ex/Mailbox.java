@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded mailbox of messages: any thread may send, only the owner (the dealer or a player) receives.
+ * Sending never blocks, so a full mailbox drops the message and tells the sender.
+ */
+public class Mailbox {
+
+    private final BlockingQueue<Message> messages;
+
+    /**
+     * @param capacity - the maximal number of messages waiting in the mailbox.
+     */
+    public Mailbox(int capacity) {
+        messages = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Sends a message to the owner of the mailbox.
+     *
+     * @param message - the message to send.
+     * @return - true iff the message was delivered, false iff the mailbox was full.
+     */
+    public boolean send(Message message) {
+        return messages.offer(message);
+    }
+
+    /**
+     * Waits for the next message.
+     *
+     * @return - the next message.
+     * @throws InterruptedException if the owner is interrupted while waiting.
+     */
+    public Message receive() throws InterruptedException {
+        return messages.take();
+    }
+
+    /**
+     * Waits for the next message of a given kind, dropping the other messages on the way (a TERMINATE message is
+     * always returned).
+     *
+     * @param kind - the kind of message to wait for.
+     * @return - the message received.
+     * @throws InterruptedException if the owner is interrupted while waiting.
+     */
+    public Message receive(Message.Kind kind) throws InterruptedException {
+        while (true) {
+            Message message = messages.take();
+            if (message.kind == kind || message.kind == Message.Kind.TERMINATE)
+                return message;
+        }
+    }
+
+    /**
+     * @return - the next message, or null if there is none.
+     */
+    public Message poll() {
+        return messages.poll();
+    }
+
+    /**
+     * Moves all the waiting messages to a collection.
+     *
+     * @param target - the collection to add the messages to.
+     * @return - the number of messages moved.
+     */
+    public int drainTo(Collection<? super Message> target) {
+        return messages.drainTo(target);
+    }
+
+    /**
+     * @return - the number of messages waiting.
+     */
+    public int size() {
+        return messages.size();
+    }
+}
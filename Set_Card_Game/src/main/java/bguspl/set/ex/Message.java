@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+/**
+ * An immutable message sent between the dealer and the players through their mailboxes.
+ */
+public final class Message {
+
+    /**
+     * The kinds of messages.
+     */
+    public enum Kind {
+        CLAIM,          // player -> dealer: a set to check
+        TICK,           // timer -> dealer: a countdown or freeze deadline is due
+        VERDICT,        // dealer -> player: the answer to a claim
+        FREEZE_ENDED,   // timer -> player: the player may press keys again
+        TERMINATE       // -> anyone: the game is over
+    }
+
+    /**
+     * A legal set (the player gets a point).
+     */
+    public static final int LEGAL = 1;
+
+    /**
+     * Not a legal set (the player is penalized).
+     */
+    public static final int ILLEGAL = -1;
+
+    /**
+     * The claimed cards left the table before the dealer checked them (no point, no penalty).
+     */
+    public static final int DISMISSED = 2;
+
+    public final Kind kind;
+
+    /**
+     * The claim sent or answered (CLAIM and VERDICT messages only).
+     */
+    public final Claim claim;
+
+    /**
+     * The answer to the claim: LEGAL, ILLEGAL or DISMISSED (VERDICT messages only).
+     */
+    public final int verdict;
+
+    /**
+     * The System.nanoTime() at which the message was sent.
+     */
+    public final long sentNanos;
+
+    private Message(Kind kind, Claim claim, int verdict) {
+        this.kind = kind;
+        this.claim = claim;
+        this.verdict = verdict;
+        this.sentNanos = System.nanoTime();
+    }
+
+    public static Message claim(Claim claim) {
+        return new Message(Kind.CLAIM, claim, 0);
+    }
+
+    public static Message tick() {
+        return new Message(Kind.TICK, null, 0);
+    }
+
+    public static Message verdict(Claim claim, int verdict) {
+        return new Message(Kind.VERDICT, claim, verdict);
+    }
+
+    public static Message freezeEnded() {
+        return new Message(Kind.FREEZE_ENDED, null, 0);
+    }
+
+    public static Message terminate() {
+        return new Message(Kind.TERMINATE, null, 0);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (claim == null ? "" : " " + claim) + (kind == Kind.VERDICT ? " verdict=" + verdict : "");
+    }
+}
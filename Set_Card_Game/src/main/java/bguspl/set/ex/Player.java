@@ -1,10 +1,11 @@
 package bguspl.set.ex;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.Threads;
 
 /**
  * This class manages the players' threads and data
@@ -60,11 +61,11 @@ public class Player implements Runnable {
 
     //private boolean isLegal = true; //false if the player has made an illegal move (i.e. the player has pressed a key that is not allowed)
 
-    private Queue<Integer> queueOfKeyPresses = new LinkedList<>(); //the queue of key presses
+    private final KeyPressRing queueOfKeyPresses; //the queue of key presses (written by the ui/ai thread, read by the player thread)
 
-    private int ansFromCheckSet = 0; //-1 if the set is not legal, 0 if there is no set to check, 1 if the set is legal
+    private final Mailbox mailbox = new Mailbox(4); //the player's mailbox: verdicts from the dealer, freeze ends from the timer wheel and termination
 
-    private boolean keyPressedOpen = true; //true if the player can press on a key, false if the player cannot press on a key
+    private volatile boolean keyPressedOpen = true; //true if the player can press on a key, false if the player cannot press on a key
 
     /**
      * The class constructor.
@@ -77,9 +78,17 @@ public class Player implements Runnable {
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
         this.env = env;
+        this.dealer = dealer;
         this.table = table;
         this.id = id;
         this.human = human;
+        KeyPressRing.Policy policy = KeyPressRing.Policy.BLOCK;
+        try {
+            policy = KeyPressRing.Policy.parse(env.config.keyPressPolicy);
+        } catch (IllegalArgumentException e) {
+            env.logger.log(Level.WARNING, "unknown key press policy " + env.config.keyPressPolicy + ", using block");
+        }
+        queueOfKeyPresses = new KeyPressRing(env.config.featureSize, policy);
     }
 
     /**
@@ -99,60 +108,57 @@ public class Player implements Runnable {
 
         while (!terminate) {
             // TODO implement main player loop
-            while (!queueOfKeyPresses.isEmpty()){
-
-                int currSlot = queueOfKeyPresses.remove();
+            int currSlot = queueOfKeyPresses.poll();
+            if (currSlot < 0){
+                queueOfKeyPresses.await(); // park until a key is pressed (or the game ends) instead of spinning
+                continue;
+            }
+            
+            System.out.println("Player.run(): is the queue of tokens contain " + currSlot + "? " + table.containsToken(id, currSlot));
 
-                // notify the ai thread that the key press has been processed
-                if (!human) aiThread.interrupt();
+            if (table.containsToken(id, currSlot)){ 
+                table.removeToken(id, currSlot);
                 
-                System.out.println("Player.run(): is the queue of tokens contain " + currSlot + "? " + table.containsToken(id, currSlot));
-
-                if (table.containsToken(id, currSlot)){ 
-                    table.removeToken(id, currSlot);
-                    
-                } else {
-
-                    if (table.countTokens(id)<3){
-                        table.placeToken(id, currSlot);
-                    }
-                    
-                    if (table.countTokens(id)==3){
-
-                        // block the player from pressing on a key and *wait* for the dealer to check if the set is legal
-                        keyPressedOpen = false;
-
-                        //send the set to the dealer for checking
-                        int[] currSetOfCards = convertToSetOfCard(id); 
-
-                        dealer.queueOfPlayersId.add(id);
-                        dealer.queueOfSets.add(currSetOfCards);
-                        
-                        dealer.getThread().interrupt(); //notify the dealer that the player has placed 3 tokens
-
-                        synchronized(this){
-                            try{
-                                wait(); //wait for the dealer to check if the set is legal (blocking the player thread from another key press)
-                            } catch (InterruptedException e) {
-                            }
-                        }
-
-                        System.out.println("player " + id + ": I AM AWAKE");
-
-                        if (ansFromCheckSet == -1){
-                            //the set is not legal
-                            penalty();
-                            ansFromCheckSet = 0;
-                        } else if (ansFromCheckSet == 1){
-                            //the set is legal
-                            point();
-                            ansFromCheckSet = 0;
-                        } 
+            } else {
 
+                if (table.countTokens(id)<env.config.featureSize){
+                    table.placeToken(id, currSlot);
+                }
+                
+                if (table.countTokens(id)==env.config.featureSize){
+
+                    int[] slots = table.getTokensSlots(id);
+                    if (slots.length < env.config.featureSize)
+                        continue; // the dealer removed one of the tokens meanwhile, so there is no set to claim
+
+                    // block the player from pressing on a key and *wait* for the dealer to check if the set is legal
+                    keyPressedOpen = false;
+
+                    //send the set to the dealer for checking
+                    dealer.submit(new Claim(id, cardsAt(slots), slots, table.getTokensVersions(id, slots), System.nanoTime())); //notify the dealer that the player has placed 3 tokens
+
+                    Message verdict = receive(Message.Kind.VERDICT); //wait for the dealer to check if the set is legal (blocking the player thread from another key press)
+                    if (verdict == null || verdict.kind != Message.Kind.VERDICT)
+                        continue; // the game is over
+
+                    env.logger.log(Level.FINE, "player " + id + " received verdict " + verdict.verdict + " "
+                            + (System.nanoTime() - verdict.sentNanos) / 1000 + " us after it was sent");
+                    System.out.println("player " + id + ": I AM AWAKE");
+
+                    if (verdict.verdict == Message.ILLEGAL){
+                        //the set is not legal
+                        penalty();
+                    } else if (verdict.verdict == Message.LEGAL){
+                        //the set is legal
+                        point();
+                    } else {
+                        //the claim was dismissed since its cards left the table before the dealer checked it
+                        openKeyPresses();
                     }
 
                 }
-            } 
+
+            }
         }
 
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
@@ -162,35 +168,25 @@ public class Player implements Runnable {
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses. If the queue of key presses is full, the thread parks until the player takes a press from it
+     * (whatever the key press policy), and while the player does not accept key presses it parks as well.
      */
     private void createArtificialIntelligence() {
         // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiThread = Threads.newThread(() -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
                 // TODO implement player key press simulator
-                int slot = (int) (Math.random() * 12);
-                //keyPressed(slot);
-                synchronized(this){
-                    while (queueOfKeyPresses.size() == 3){
-                        try{
-                            wait();
-                        } catch (InterruptedException e) {
-                        }
-                    }
-                    
-                    keyPressed(slot);
-                    notify(); // ???
-
+                if (!keyPressedOpen){
+                    LockSupport.park(this); // the player wakes this thread up when it accepts key presses again
+                    continue;
                 }
-
-                // try {
-                //     wait();
-                // } catch (InterruptedException ignored) {}
+                int slot = (int) (Math.random() * env.config.tableSize);
+                if (!keyPressed(slot)) // with the block policy this already waits while the queue is full
+                    queueOfKeyPresses.awaitRoom(); // the press was dropped, so wait for room instead of spinning
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
+        }, "computer-" + id, env.config.virtualThreads);
         aiThread.start();
     }
 
@@ -200,31 +196,34 @@ public class Player implements Runnable {
     public void terminate() {
         // TODO implement
         terminate = true;
+        mailbox.send(Message.terminate());
+        queueOfKeyPresses.close();
+        if (aiThread != null) LockSupport.unpark(aiThread);
     }
 
     /**
      * This method is called when a key is pressed.
      *
      * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the key press was queued (false iff it was dropped).
      */
-    public void keyPressed(int slot) {
+    public boolean keyPressed(int slot) {
         // TODO implement
 
         System.out.println("Player.keyPressed: Thread " + Thread.currentThread().getName() + " is " + (human ? "human" : "computer" + "\n\tslot is: " + slot) );
 
-         // should lock the option to press a key while the dealer is placing\removing cards 
-        synchronized(dealer.lock){
-
-            System.out.println( "\n\tamountOfTokens: " + table.countTokens(id));
-    
-            if (table.countTokens(id)<=3 && keyPressedOpen){
-                queueOfKeyPresses.add(slot);
-    
-                //////////////////////////// FOR TESTING ////////////////////////////
-                System.out.println("Player.keyPressed: Player " + id + " pressed " + slot + "\n\tamountOfTokens: " + table.countTokens(id));
-            } 
-        }
-   
+        // no lock here: the key press is only queued (the table locks just the slot when the token is placed), so
+        // the ui thread never waits for the dealer to place or remove cards
+        System.out.println( "\n\tamountOfTokens: " + table.countTokens(id));
+
+        boolean accepted = false;
+        if (table.countTokens(id)<=env.config.featureSize && keyPressedOpen){
+            accepted = queueOfKeyPresses.offer(slot, !human); // a human's key press must never block the ui thread
+
+            //////////////////////////// FOR TESTING ////////////////////////////
+            System.out.println("Player.keyPressed: Player " + id + " pressed " + slot + "\n\tamountOfTokens: " + table.countTokens(id));
+        } 
+        return accepted;
     }
 
     /**
@@ -242,18 +241,14 @@ public class Player implements Runnable {
             dealer.maxScore = score;
         } 
 
-        try{
-            System.out.println("Player.penalty: Thread " + Thread.currentThread().getName() + " has been penalized and is frozen");
-            Thread.sleep(env.config.pointFreezeMillis);
-        } catch (InterruptedException e) {
-        }
+        env.logger.log(Level.FINE, "player " + id + " scored and is frozen for " + env.config.pointFreezeMillis + " ms");
+        freeze(env.config.pointFreezeMillis);
 
-        System.out.println("Player.penalty: Thread " + Thread.currentThread().getName() + " has been penalized and is frozen");
         queueOfKeyPresses.clear();
-        keyPressedOpen = true;
+        openKeyPresses();
 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
-        env.ui.setScore(id, ++score);
+        env.ui.setScore(id, score);
     }
 
     /**
@@ -261,15 +256,11 @@ public class Player implements Runnable {
      */
     public void penalty() {
         // TODO implement 
-        try{
-            System.out.println("Player.penalty: Thread " + Thread.currentThread().getName() + " has been penalized and is frozen");
-            Thread.sleep(env.config.penaltyFreezeMillis);
-        } catch (InterruptedException e) {
-        }
+        env.logger.log(Level.FINE, "player " + id + " was penalized and is frozen for " + env.config.penaltyFreezeMillis + " ms");
+        freeze(env.config.penaltyFreezeMillis);
 
-        System.out.println("Player.penalty: Thread " + Thread.currentThread().getName() + " has been penalized and is frozen");
         queueOfKeyPresses.clear();
-        keyPressedOpen = true;
+        openKeyPresses();
 
     }
 
@@ -286,18 +277,49 @@ public class Player implements Runnable {
     }
 
     public int[] convertToSetOfCard(int playerId){
-        int[] setOfCards = new int[3];
+        return cardsAt(table.getTokensSlots(playerId));
+    }
 
-        int[] listOfTokensSlots = table.getTokensSlots(playerId);
+    // the cards in the given slots (-1 for a slot that has been emptied in the meantime)
+    private int[] cardsAt(int[] slots){
+        int[] setOfCards = new int[slots.length];
 
         int i = 0;
-        for (int currSlot: listOfTokensSlots) {
-            setOfCards[i] = table.slotToCard[currSlot];
+        for (int currSlot: slots) {
+            Integer card = table.slotToCard[currSlot];
+            setOfCards[i] = card == null ? -1 : card;
             i++;
         }
         return setOfCards;
     }
 
+    // blocks the player thread until the timer wheel sends the message that the freeze is over
+    private void freeze(long millis){
+        if (millis <= 0) return;
+        env.timers.schedule(millis, TimeUnit.MILLISECONDS, () -> mailbox.send(Message.freezeEnded()));
+        receive(Message.Kind.FREEZE_ENDED);
+    }
+
+    // lets the player press keys again (and wakes up the ai thread, that parks meanwhile)
+    private void openKeyPresses(){
+        keyPressedOpen = true;
+        if (aiThread != null) LockSupport.unpark(aiThread);
+    }
+
+    // waits for the next message of the given kind in the mailbox (null if the thread is interrupted)
+    private Message receive(Message.Kind kind){
+        try{
+            return mailbox.receive(kind);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    // sends a message to the player's mailbox
+    public boolean deliver(Message message){
+        return mailbox.send(message);
+    }
+
     //getter for the thread of the player
     public Thread getPlayerThread(){
         return playerThread;
@@ -308,9 +330,4 @@ public class Player implements Runnable {
         return id;
     }
 
-    // setter for the answer from the dealer
-    public void setAnsFromCheckSet(int ans){
-        ansFromCheckSet = ans;
-    }
-
 }
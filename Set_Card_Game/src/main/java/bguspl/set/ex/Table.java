@@ -1,10 +1,14 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.SetIndex;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -32,9 +36,21 @@ public class Table {
 
     //////////////////////// FIELDS ADDED ////////////////////////
 
+    //the cards currently on the table and the legal sets among them (updated on every card placed/removed)
+    protected final SetIndex liveSets;
+
     //the tokens that the player has on the table (queueOfTokens[player][slot])
     protected volatile boolean[][] playerTokens; // tokens per player per slot (if any)
 
+    //the version of each slot, bumped whenever a card is placed in it or removed from it
+    protected final AtomicLongArray slotVersions;
+
+    //one lock per slot, guarding its card and the tokens on it (the table delays are waited out before locking)
+    private final ReentrantLock[] slotLocks;
+
+    //the version of the slot each token was placed on (tokenVersions[player][slot], only used by the player's thread)
+    private final long[][] tokenVersions;
+
 
     /**
      * Constructor for testing.
@@ -48,7 +64,16 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        liveSets = new SetIndex(env.util, env.config.deckSize, true);
+        for (Integer card : slotToCard)
+            if (card != null)
+                liveSets.add(card);
         playerTokens = new boolean[env.config.players][env.config.tableSize];
+        slotVersions = new AtomicLongArray(env.config.tableSize);
+        tokenVersions = new long[env.config.players][env.config.tableSize];
+        slotLocks = new ReentrantLock[env.config.tableSize];
+        for (int slot = 0; slot < slotLocks.length; slot++)
+            slotLocks[slot] = new ReentrantLock();
     }
 
     /**
@@ -66,8 +91,7 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        liveSets.sets().forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -97,11 +121,18 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.timers.await(env.config.tableDelayMillis, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        slotLocks[slot].lock();
+        try {
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            slotVersions.incrementAndGet(slot);
+        } finally {
+            slotLocks[slot].unlock();
+        }
+        liveSets.add(card);
 
         // TODO implement
         env.ui.placeCard(card, slot);
@@ -113,21 +144,75 @@ public class Table {
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.timers.await(env.config.tableDelayMillis, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ignored) {}
 
         // TODO implement
-        for (int i = 0; i< env.config.players; i++){
-            removeToken(i, slot);
-        }
+        int card;
+        slotLocks[slot].lock();
+        try {
+            for (int i = 0; i< env.config.players; i++){
+                removeToken(i, slot);
+            }
 
-        int card = slotToCard[slot];
-        cardToSlot[card] = null; 
-        slotToCard[slot] = null; 
+            card = slotToCard[slot];
+            cardToSlot[card] = null; 
+            slotToCard[slot] = null; 
+            slotVersions.incrementAndGet(slot);
+        } finally {
+            slotLocks[slot].unlock();
+        }
+        liveSets.remove(card);
 
         env.ui.removeCard(slot);
     }
 
+    /**
+     * Replaces all the cards on the table at once (used when reshuffling): a single table delay, then every slot is
+     * cleared and gets its card from the new layout. The layout may still be computed while the delay passes.
+     * @param layout - the card for each slot (the slots from its length on are left empty).
+     * @return - the cards placed on the table.
+     *
+     * @post - slotToCard[i] == cards[i] for every slot i < cards.length, the other slots are empty.
+     */
+    public int[] replaceCards(CompletableFuture<int[]> layout) {
+        try {
+            env.timers.await(env.config.tableDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {}
+        int[] cards = layout.join();
+
+        // all the slots are locked (in increasing order) so no token lands on a half swapped table
+        for (ReentrantLock slotLock : slotLocks)
+            slotLock.lock();
+        try {
+            for (int slot = 0; slot < env.config.tableSize; slot++){
+                Integer card = slotToCard[slot];
+                if (card != null){
+                    for (int i = 0; i< env.config.players; i++){
+                        removeToken(i, slot);
+                    }
+                    cardToSlot[card] = null;
+                    slotToCard[slot] = null;
+                    liveSets.remove(card);
+                    slotVersions.incrementAndGet(slot);
+                    env.ui.removeCard(slot);
+                }
+            }
+
+            for (int slot = 0; slot < cards.length; slot++){
+                cardToSlot[cards[slot]] = slot;
+                slotToCard[slot] = cards[slot];
+                liveSets.add(cards[slot]);
+                slotVersions.incrementAndGet(slot);
+                env.ui.placeCard(cards[slot], slot);
+            }
+        } finally {
+            for (ReentrantLock slotLock : slotLocks)
+                slotLock.unlock();
+        }
+        return cards;
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
@@ -135,13 +220,18 @@ public class Table {
      */
     public void placeToken(int player, int slot) {
         // TODO implement
-        
-        if (slotToCard[slot] != null){
+        slotLocks[slot].lock(); // only waits for a change of this very slot
+        try {
+            if (slotToCard[slot] != null){
 
-            ////////////////////// for testing ///////////////////////
-            System.out.println("table.placeToken: " + player + ": " + slot);
-            playerTokens[player][slot] = true;
-            env.ui.placeToken(player, slot);
+                ////////////////////// for testing ///////////////////////
+                System.out.println("table.placeToken: " + player + ": " + slot);
+                tokenVersions[player][slot] = slotVersions.get(slot);
+                playerTokens[player][slot] = true;
+                env.ui.placeToken(player, slot);
+            }
+        } finally {
+            slotLocks[slot].unlock();
         }
     }
 
@@ -154,20 +244,40 @@ public class Table {
     public boolean removeToken(int player, int slot) {
         // TODO implement 
         // implement try and catch 
-        if (slotToCard[slot] != null){
-            
-            ////////////////////// for testing ///////////////////////
-            System.out.println("            table.removeToken: " + player + ": " + slot);
-            playerTokens[player][slot] = false;
-            env.ui.removeToken(player, slot);
-            return true;
+        slotLocks[slot].lock();
+        try {
+            if (slotToCard[slot] != null){
+                
+                ////////////////////// for testing ///////////////////////
+                System.out.println("            table.removeToken: " + player + ": " + slot);
+                playerTokens[player][slot] = false;
+                env.ui.removeToken(player, slot);
+                return true;
+            }
+            return false;
+        } finally {
+            slotLocks[slot].unlock();
         }
-        return false;
     }
 
 
     //////////////////////// METHODS ADDED ////////////////////////
 
+    // returns the number of legal sets currently on the table
+    public long countSets(){
+        return liveSets.count();
+    }
+
+    // returns true iff there is at least one legal set on the table
+    public boolean hasSet(){
+        return liveSets.hasSet();
+    }
+
+    // returns the legal sets currently on the table (each one is sorted)
+    public List<int[]> getSets(){
+        return liveSets.sets();
+    }
+
     // contains method for the queue of tokens
     public boolean containsToken(int player, int slot){
         return playerTokens[player][slot];
@@ -184,16 +294,31 @@ public class Table {
         return tokens;
     }
     
+    // returns the version each slot had when the player placed a token on it
+    public long[] getTokensVersions(int player, int[] slots){
+        long[] versions = new long[slots.length];
+        for (int i = 0; i < slots.length; i++){
+            versions[i] = tokenVersions[player][slots[i]];
+        }
+        return versions;
+    }
+
+    // returns the current version of a slot (it changes whenever a card is placed in it or removed from it)
+    public long slotVersion(int slot){
+        return slotVersions.get(slot);
+    }
+
     // returns the slots that the player has tokens on
+    // (fewer than featureSize if the dealer removed one of the player's tokens in the meantime)
     public int[] getTokensSlots(int player){
-        int[] slots = new int[3];
+        int[] slots = new int[env.config.featureSize];
         int index = 0;
-        for (int i = 0; i < env.config.tableSize; i++){
+        for (int i = 0; i < env.config.tableSize && index < slots.length; i++){
             if (playerTokens[player][i]){
                 slots[index] = i;
                 index++;
             }
         }
-        return slots;
+        return Arrays.copyOf(slots, index);
     }
 }
@@ -0,0 +1,20 @@
+package bguspl.set;
+
+/**
+ * Creates the fastest BatchValidator the running JVM supports.
+ * This version is loaded from the multi-release jar on Java 17+, and uses the vector API when the
+ * jdk.incubator.vector module is enabled (--add-modules jdk.incubator.vector).
+ */
+public final class BatchValidators {
+
+    private BatchValidators() {}
+
+    /**
+     * @see BatchValidator#BatchValidator(int, long[], long, long)
+     */
+    public static BatchValidator create(int featureSize, long[] packedTable, long laneLowBits, long laneAllBits) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            return new VectorBatchValidator(featureSize, packedTable, laneLowBits, laneAllBits);
+        return new BatchValidator(featureSize, packedTable, laneLowBits, laneAllBits);
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A BatchValidator that checks a vector of candidates at a time (one candidate per lane), gathering the packed
+ * features of their cards straight from the packed table.
+ */
+class VectorBatchValidator extends BatchValidator {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    VectorBatchValidator(int featureSize, long[] packedTable, long laneLowBits, long laneAllBits) {
+        super(featureSize, packedTable, laneLowBits, laneAllBits);
+    }
+
+    @Override
+    public int validate(int[] cards, int count, boolean[] results) {
+        int legal = 0;
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector and = LongVector.broadcast(SPECIES, laneAllBits);
+            LongVector or = LongVector.zero(SPECIES);
+            for (int j = 0; j < featureSize; ++j) {
+                LongVector packed = LongVector.fromArray(SPECIES, packedTable, 0, cards, j * count + i);
+                and = and.and(packed);
+                or = or.or(packed);
+            }
+            LongVector notFull = nonEmptyLanes(or.not().and(laneAllBits));
+            LongVector legalLanes = nonEmptyLanes(and).or(notFull.not().and(laneLowBits));
+            VectorMask<Long> mask = legalLanes.eq(laneLowBits);
+            mask.intoArray(results, i);
+            legal += mask.trueCount();
+        }
+        return legal + validate(cards, count, i, results);
+    }
+
+    private LongVector nonEmptyLanes(LongVector packed) {
+        LongVector lanes = packed;
+        for (int i = 1; i < featureSize; ++i)
+            lanes = lanes.or(packed.lanewise(VectorOperators.LSHR, i));
+        return lanes.and(laneLowBits);
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
@@ -0,0 +1,31 @@
+package bguspl.set;
+
+/**
+ * Creates the threads of the game (the dealer, the players and the computer players' key press generators).
+ * This version is loaded from the multi-release jar on Java 21+, where the threads may be virtual threads.
+ */
+public final class Threads {
+
+    private Threads() {}
+
+    /**
+     * @return - true iff the running JVM can create virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return true;
+    }
+
+    /**
+     * Creates a thread (not started yet).
+     *
+     * @param task    - the task the thread runs.
+     * @param name    - the name of the thread.
+     * @param virtual - true for a virtual thread, false for a platform thread.
+     * @return - the thread.
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        if (virtual)
+            return Thread.ofVirtual().name(name).unstarted(task);
+        return new Thread(task, name);
+    }
+}
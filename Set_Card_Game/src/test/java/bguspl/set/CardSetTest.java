@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardSetTest {
+
+    @Test
+    void addAndRemove_UpdateSize() {
+        CardSet set = new CardSet(200);
+
+        assertTrue(set.add(130));
+        assertFalse(set.add(130));
+        assertTrue(set.add(3));
+        assertEquals(2, set.size());
+        assertArrayEquals(new int[]{3, 130}, set.toArray());
+
+        assertTrue(set.remove(130));
+        assertFalse(set.remove(130));
+        assertEquals(1, set.size());
+        assertArrayEquals(new int[]{3}, set.toArray());
+    }
+
+    @Test
+    void toArray_ReturnsCardsInOrder() {
+        CardSet set = new CardSet(300);
+        int[] cards = {0, 63, 64, 65, 127, 128, 299};
+        for (int card : cards)
+            set.add(card);
+
+        assertArrayEquals(cards, set.toArray());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertArrayEquals(new int[0], set.toArray());
+    }
+}
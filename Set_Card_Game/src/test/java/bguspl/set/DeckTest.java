@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    @Test
+    void draw_EmptiesTheDeckWithoutRepeats() {
+        Deck deck = new Deck(81, new Random(1));
+        CardSet drawn = new CardSet(81);
+
+        for (int i = 0; i < 81; ++i)
+            assertTrue(drawn.add(deck.draw()));
+        assertTrue(deck.isEmpty());
+        assertEquals(-1, deck.draw());
+        assertEquals(81, drawn.size());
+    }
+
+    @Test
+    void draw_SameSeedSameOrder() {
+        Deck first = new Deck(81, new Random(42));
+        Deck second = new Deck(81, new Random(42));
+
+        for (int i = 0; i < 40; ++i)
+            assertEquals(first.draw(), second.draw());
+        for (int card = 0; card < 81; card += 7) {
+            assertEquals(first.add(card), second.add(card));
+        }
+        while (!first.isEmpty())
+            assertEquals(first.draw(), second.draw());
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    void addAndRemove_KeepTheDeckConsistent() {
+        Deck deck = new Deck(27, new Random(7));
+
+        assertFalse(deck.add(3));
+        assertTrue(deck.remove(3));
+        assertFalse(deck.remove(3));
+        assertFalse(deck.contains(3));
+        assertEquals(26, deck.size());
+
+        int card = deck.draw();
+        assertFalse(deck.contains(card));
+        assertTrue(deck.add(card));
+        assertTrue(deck.add(3));
+        assertTrue(deck.remove(26));
+        assertTrue(deck.add(26));
+        int[] cards = deck.toArray();
+        for (int i = 0; i < deck.size(); ++i)
+            assertEquals(cards[i], deck.get(i));
+        Arrays.sort(cards);
+        assertArrayEquals(IntStream.range(0, 27).toArray(), cards);
+    }
+}
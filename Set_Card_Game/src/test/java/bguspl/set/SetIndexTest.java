@@ -0,0 +1,68 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetIndexTest {
+
+    private static Util util(int featureCount, int featureSize) {
+        return new UtilImpl(TestConfigs.config("FeatureCount=" + featureCount, "FeatureSize=" + featureSize));
+    }
+
+    private static void randomChanges(Util util, int deckSize, long seed) {
+        SetIndex index = new SetIndex(util, deckSize, true);
+        CardSet cards = new CardSet(deckSize);
+        Random random = new Random(seed);
+
+        for (int change = 0; change < 300; ++change) {
+            int card = random.nextInt(deckSize);
+            if (random.nextInt(3) == 0) {
+                index.remove(card);
+                cards.remove(card);
+            } else {
+                index.add(card);
+                cards.add(card);
+            }
+
+            int expected = util.findSets(cards, Integer.MAX_VALUE, set -> {});
+            assertEquals(expected, index.count());
+            assertEquals(expected, index.sets().size());
+            assertEquals(expected > 0, index.hasSet());
+        }
+    }
+
+    @Test
+    void addAndRemove_ThreeCardSets() {
+        randomChanges(util(4, 3), 81, 0);
+    }
+
+    @Test
+    void addAndRemove_FourCardSets() {
+        randomChanges(util(3, 4), 64, 1);
+    }
+
+    private static void fullDeck(Util util, int deckSize, int expected) {
+        SetIndex index = new SetIndex(util, deckSize, false);
+        for (int card = 0; card < deckSize; ++card)
+            index.add(card);
+
+        assertEquals(expected, index.count());
+        assertEquals(0, index.sets().size());
+    }
+
+    @Test
+    void countOnly_FullDeck() {
+        // any two cards have exactly one third: 81 * 80 / 6 sets
+        fullDeck(util(4, 3), 81, 1080);
+    }
+
+    @Test
+    void countOnly_FullDeckOfFourCardSets() {
+        // per feature 4 ordered values are all equal and 4! all different;
+        // without the 4^3 tuples of one repeated card: (28^3 - 64) / 4! sets
+        fullDeck(util(3, 4), 64, 912);
+    }
+}
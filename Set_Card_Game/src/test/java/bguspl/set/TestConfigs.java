@@ -0,0 +1,36 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The configuration fixture shared by the tests.
+ */
+public final class TestConfigs {
+
+    private TestConfigs() {
+    }
+
+    /**
+     * Builds a config with the given properties and no player keys.
+     *
+     * @param entries - "Key=Value" properties, overriding the defaults.
+     * @return - the config.
+     */
+    public static Config config(String... entries) {
+        Properties properties = new Properties();
+        properties.put("PlayerKeys1", "");
+        properties.put("PlayerKeys2", "");
+        for (String entry : entries) {
+            int split = entry.indexOf('=');
+            properties.put(entry.substring(0, split), entry.substring(split + 1));
+        }
+        return new Config(new MockLogger(), properties);
+    }
+
+    public static class MockLogger extends Logger {
+        public MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    // a tiny wheel, so deadlines wrap around it several times
+    private final TimerWheel timers = new TimerWheel("test-wheel", 1, TimeUnit.MILLISECONDS, 8, new TestConfigs.MockLogger());
+
+    @AfterEach
+    void tearDown() {
+        timers.stop();
+    }
+
+    @Test
+    void expiresInDeadlineOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        int[] delays = {60, 5, 35, 20};
+        long start = System.nanoTime();
+        for (int delay : delays)
+            timers.schedule(delay, TimeUnit.MILLISECONDS, () -> {
+                order.add(delay);
+                done.countDown();
+            });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(5, 20, 35, 60), order);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(0, timers.size());
+    }
+
+    @Test
+    void cancelledDeadlinesNeverExpire() throws InterruptedException {
+        AtomicInteger expired = new AtomicInteger();
+        List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            timeouts.add(timers.schedule(10 + i % 20, TimeUnit.MILLISECONDS, expired::incrementAndGet));
+        for (int i = 0; i < timeouts.size(); i += 2)
+            assertTrue(timeouts.get(i).cancel());
+        assertEquals(50, timers.size());
+
+        timers.await(50, TimeUnit.MILLISECONDS);
+        assertTrue(waitFor(() -> expired.get() == 50));
+        for (int i = 0; i < timeouts.size(); i++) {
+            assertEquals(i % 2 == 0, timeouts.get(i).isCancelled());
+            assertEquals(i % 2 != 0, timeouts.get(i).isExpired());
+            assertFalse(timeouts.get(i).cancel());
+        }
+        assertEquals(50, expired.get());
+    }
+
+    @Test
+    void awaitBlocksForTheDelay() throws InterruptedException {
+        long start = System.nanoTime();
+        timers.await(30, TimeUnit.MILLISECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++)
+            Thread.sleep(10);
+        return condition.getAsBoolean();
+    }
+}
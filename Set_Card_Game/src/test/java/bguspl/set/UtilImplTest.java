@@ -0,0 +1,243 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static Config config(int featureCount, int featureSize) {
+        return TestConfigs.config("FeatureCount=" + featureCount, "FeatureSize=" + featureSize);
+    }
+
+    private static List<Integer> shuffledDeck(Config config, long seed) {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(seed));
+        return deck;
+    }
+
+    /**
+     * Checks every combination of cards in lexicographic order (the way findSets used to work).
+     */
+    private static List<int[]> findSetsByCombinations(Util util, List<Integer> deck, int r, int count) {
+        List<int[]> sets = new ArrayList<>();
+        int n = deck.size();
+        int[] combination = IntStream.range(0, r).toArray();
+        while (combination[r - 1] < n) {
+            int[] cards = IntStream.of(combination).map(deck::get).sorted().toArray();
+            if (util.testSet(cards)) {
+                sets.add(cards);
+                if (sets.size() >= count) return sets;
+            }
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+
+    private static void assertSameSets(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        Iterator<int[]> actualSets = actual.iterator();
+        for (int[] set : expected)
+            assertArrayEquals(set, actualSets.next());
+    }
+
+    @Test
+    void testSet_LegalAndIllegalSets() {
+        Util util = new UtilImpl(config(4, 3));
+
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        assertTrue(util.testSet(new int[]{0, 40, 80}));
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+    }
+
+    @Test
+    void testSet_MatchesFeatureDefinition() {
+        Config config = config(3, 4);
+        Util util = new UtilImpl(config);
+        Random random = new Random(4);
+
+        for (int test = 0; test < 10000; ++test) {
+            int[] cards = random.ints(0, config.deckSize).distinct().limit(4).sorted().toArray();
+            int[][] features = util.cardsToFeatures(cards);
+            boolean expected = true;
+            for (int i = 0; i < config.featureCount; ++i) {
+                final int feature = i;
+                long values = IntStream.range(0, cards.length).map(j -> features[j][feature]).distinct().count();
+                expected &= values == 1 || values == cards.length;
+            }
+            assertEquals(expected, util.testSet(cards));
+        }
+    }
+
+    @Test
+    void testSet_SpecializedValidatorsMatchFeatureDefinition() {
+        for (int featureSize = 2; featureSize <= 5; ++featureSize) {
+            Config config = config(3, featureSize);
+            Util util = new UtilImpl(config);
+            Random random = new Random(featureSize);
+
+            for (int setSize = 2; setSize <= featureSize + 1; ++setSize)
+                for (int test = 0; test < 2000; ++test) {
+                    int[] cards = random.ints(0, config.deckSize).distinct().limit(setSize).toArray();
+                    int[][] features = util.cardsToFeatures(cards);
+                    boolean expected = true;
+                    for (int i = 0; i < config.featureCount; ++i) {
+                        final int feature = i;
+                        long values = IntStream.range(0, cards.length).map(j -> features[j][feature]).distinct().count();
+                        expected &= values == 1 || values == cards.length;
+                    }
+                    assertEquals(expected, util.testSet(cards));
+                }
+        }
+    }
+
+    @Test
+    void batchValidator_MatchesTestSet() {
+        Config config = config(4, 3);
+        UtilImpl util = new UtilImpl(config);
+        int count = 1000;
+        int[] cards = new Random(10).ints(3 * count, 0, config.deckSize).toArray();
+        boolean[] results = new boolean[count];
+
+        int legal = util.batchValidator().validate(cards, count, results);
+        int expected = 0;
+        for (int i = 0; i < count; ++i) {
+            boolean isSet = util.testSet(new int[]{cards[i], cards[count + i], cards[2 * count + i]});
+            assertEquals(isSet, results[i]);
+            if (isSet) ++expected;
+        }
+        assertEquals(expected, legal);
+    }
+
+    @Test
+    void findSets_FullDeckMatchesCombinations() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 1);
+
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(1080, sets.size());
+        assertSameSets(findSetsByCombinations(util, deck, 3, Integer.MAX_VALUE), sets);
+    }
+
+    @Test
+    void findSets_CountLimitMatchesCombinations() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 2).subList(0, 12);
+
+        for (int count = 1; count <= 3; ++count)
+            assertSameSets(findSetsByCombinations(util, deck, 3, count), util.findSets(deck, count));
+    }
+
+    @Test
+    void findSets_FourCardSetsMatchCombinations() {
+        Config config = config(3, 4);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 3);
+
+        assertSameSets(findSetsByCombinations(util, deck, 4, Integer.MAX_VALUE), util.findSets(deck, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void findSets_ParallelMatchesSequential() {
+        Config config = config(6, 3);
+        Util util = new UtilImpl(config);
+        Util parallel = new ParallelUtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 5);
+
+        assertSameSets(util.findSets(deck, Integer.MAX_VALUE), parallel.findSets(deck, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void findSets_ParallelHonoursCount() {
+        Config config = config(6, 3);
+        Util parallel = new ParallelUtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 6);
+
+        List<int[]> sets = parallel.findSets(deck, 10);
+        assertEquals(10, sets.size());
+        sets.forEach(set -> assertTrue(parallel.testSet(set)));
+    }
+
+    @Test
+    void sets_StreamMatchesFindSets() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = shuffledDeck(config, 7);
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+
+        assertSameSets(util.findSets(deck, Integer.MAX_VALUE), util.sets(cards).collect(Collectors.toList()));
+        assertEquals(1080, util.sets(cards).parallel().count());
+        assertArrayEquals(util.findSets(deck, 1).get(0), util.sets(cards).findFirst().orElse(null));
+    }
+
+    @Test
+    void findSets_ConsumerStopsAtCount() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        int[] cards = shuffledDeck(config, 8).stream().mapToInt(Integer::intValue).toArray();
+        List<int[]> sets = new ArrayList<>();
+
+        assertEquals(5, util.findSets(cards, 5, sets::add));
+        assertEquals(5, sets.size());
+    }
+
+    @Test
+    void findSets_CompletionTableMatchesComputedCompletion(@TempDir Path cache) {
+        Config config = TestConfigs.config("CompletionTableCache=" + cache);
+        CompletionTable completions = CompletionTable.load(new TestConfigs.MockLogger(), config);
+        assertNotNull(completions);
+        assertTrue(Files.exists(cache.resolve("completion-4x3.bin")));
+
+        Util util = new UtilImpl(config);
+        for (int a = 0; a < config.deckSize; ++a)
+            for (int b = a + 1; b < config.deckSize; ++b)
+                assertTrue(util.testSet(new int[]{a, b, completions.third(a, b)}));
+        assertThrows(IllegalArgumentException.class, () -> completions.third(5, 5));
+        assertThrows(IllegalArgumentException.class, () -> completions.third(-1, 5));
+        assertThrows(IllegalArgumentException.class, () -> completions.third(5, config.deckSize));
+
+        List<Integer> deck = shuffledDeck(config, 9);
+        assertSameSets(util.findSets(deck, Integer.MAX_VALUE),
+                new UtilImpl(config, CompletionTable.load(new TestConfigs.MockLogger(), config)).findSets(deck, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void strategies_AllFindTheSameSets() {
+        Config config = config(4, 3);
+        List<Integer> deck = shuffledDeck(config, 11);
+        List<int[]> expected = new UtilImpl(config).findSets(deck, Integer.MAX_VALUE);
+
+        for (String name : UtilStrategies.names()) {
+            Util util = UtilStrategies.create(new TestConfigs.MockLogger(), TestConfigs.config("SetFinder=" + name));
+            assertSameSets(expected, util.findSets(deck, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void strategies_AutoPicksARegisteredStrategy() {
+        Util util = UtilStrategies.create(new TestConfigs.MockLogger(), TestConfigs.config("SetFinder=" + UtilStrategies.AUTO));
+
+        assertEquals(1080, util.findSets(shuffledDeck(config(4, 3), 12), Integer.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,63 @@
+package bguspl.set.analysis;
+
+import bguspl.set.Config;
+import bguspl.set.TestConfigs;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealSimulatorTest {
+
+    private static Config config(String featureSize) {
+        return TestConfigs.config("FeatureSize=" + featureSize);
+    }
+
+    @Test
+    void countSets_MatchesFindSets() {
+        Config config = config("3");
+        DealSimulator simulator = new DealSimulator(config);
+        UtilImpl util = new UtilImpl(config);
+        Random random = new Random(5);
+
+        for (int deal = 0; deal < 1000; ++deal) {
+            int[] cards = random.ints(0, config.deckSize).distinct().limit(config.tableSize).toArray();
+            assertEquals(util.findSets(cards, Integer.MAX_VALUE, set -> {}), simulator.countSets(cards));
+        }
+    }
+
+    @Test
+    void run_SameSeedSameResult() {
+        DealSimulator simulator = new DealSimulator(config("3"));
+
+        DealSimulator.Result first = simulator.run(10_000, 100, 2, 42);
+        DealSimulator.Result second = simulator.run(10_000, 100, 2, 42);
+        assertEquals(first.toString(), second.toString());
+        assertEquals(10_000, first.deals);
+        assertEquals(100, first.games);
+    }
+
+    @Test
+    void run_NoSetProbabilityOfTwelveCards() {
+        // about 3.2% of the 12-card tables have no set
+        DealSimulator.Result result = new DealSimulator(config("3")).run(200_000, 0, 4, 7);
+        assertTrue(result.noSetProbability() > 0.025 && result.noSetProbability() < 0.04);
+    }
+
+    @Test
+    void run_GamesTakeAllTheSetsTheyCan() {
+        DealSimulator.Result result = new DealSimulator(config("3")).run(0, 1000, 1, 3);
+
+        // every game takes at most 27 sets (81 cards) and ends with no set among the remaining cards
+        assertTrue(result.setsPerGame() > 20 && result.setsPerGame() <= 27);
+    }
+
+    @Test
+    void constructor_RejectsOtherSetSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new DealSimulator(config("4")));
+    }
+}
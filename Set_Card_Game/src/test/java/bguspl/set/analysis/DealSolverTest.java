@@ -0,0 +1,78 @@
+package bguspl.set.analysis;
+
+import bguspl.set.Config;
+import bguspl.set.TestConfigs;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DealSolverTest {
+
+    private Config config;
+    private Util util;
+    private int[] order;
+
+    @BeforeEach
+    void setUp() {
+        config = TestConfigs.config("FeatureCount=3", "FeatureSize=3");
+        util = new UtilImpl(config);
+
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(0));
+        order = deck.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Plays every possible game without a transposition table (returns {max sets, expected sets}).
+     */
+    private double[] bruteForce(int[] deck, int tableSize, int[] table, int next) {
+        List<int[]> sets = new ArrayList<>();
+        util.findSets(table, Integer.MAX_VALUE, sets::add);
+        if (sets.isEmpty()) return new double[]{0, 0};
+
+        double max = 0, expected = 0;
+        for (int[] set : sets) {
+            List<Integer> childTable = Arrays.stream(table).boxed().collect(Collectors.toList());
+            for (int card : set)
+                childTable.remove((Integer) card);
+            int childNext = next;
+            while (childNext < deck.length && childTable.size() < tableSize)
+                childTable.add(deck[childNext++]);
+            double[] child = bruteForce(deck, tableSize, childTable.stream().mapToInt(Integer::intValue).toArray(), childNext);
+            max = Math.max(max, child[0]);
+            expected += child[1];
+        }
+        return new double[]{1 + max, 1 + expected / sets.size()};
+    }
+
+    @Test
+    void solve_MatchesBruteForce() {
+        double[] expected = bruteForce(order, 6, Arrays.copyOf(order, 6), 6);
+
+        DealSolver.Outcome outcome = new DealSolver(util, config.deckSize, 6, 1000, ForkJoinPool.commonPool()).solve(order);
+        assertEquals((int) expected[0], outcome.maxSets);
+        assertEquals(expected[1], outcome.expectedSets, 1e-9);
+    }
+
+    @Test
+    void solve_MatchesBruteForceWithoutTranspositionTable() {
+        int[] deck = Arrays.copyOf(order, 18);
+        double[] expected = bruteForce(deck, 9, Arrays.copyOf(deck, 9), 9);
+
+        DealSolver.Outcome outcome = new DealSolver(util, config.deckSize, 9, 0, ForkJoinPool.commonPool()).solve(deck);
+        assertEquals((int) expected[0], outcome.maxSets);
+        assertEquals(expected[1], outcome.expectedSets, 1e-9);
+    }
+}
@@ -0,0 +1,124 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressRingTest {
+
+    @Test
+    void pollReturnsThePressesInOrder() {
+        KeyPressRing ring = new KeyPressRing(3, KeyPressRing.Policy.DROP_NEWEST);
+
+        assertEquals(-1, ring.poll());
+        for (int round = 0; round < 5; ++round) { // wraps around the ring
+            assertTrue(ring.offer(round, false));
+            assertTrue(ring.offer(round + 1, false));
+            assertEquals(round, ring.poll());
+            assertEquals(round + 1, ring.poll());
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test
+    void dropNewest_DropsWhenFull() {
+        KeyPressRing ring = new KeyPressRing(2, KeyPressRing.Policy.DROP_NEWEST);
+
+        assertTrue(ring.offer(1, true));
+        assertTrue(ring.offer(2, true));
+        assertFalse(ring.offer(3, true));
+        assertEquals(1, ring.poll());
+        assertTrue(ring.offer(4, true));
+        assertEquals(2, ring.poll());
+        assertEquals(4, ring.poll());
+    }
+
+    @Test
+    void coalesce_CancelsAToggleOnTheSameSlot() {
+        KeyPressRing ring = new KeyPressRing(3, KeyPressRing.Policy.COALESCE);
+
+        assertTrue(ring.offer(5, false));
+        assertTrue(ring.offer(7, false));
+        assertTrue(ring.offer(5, false)); // cancels the pending press on slot 5
+        assertTrue(ring.offer(9, false));
+        assertEquals(7, ring.poll());
+        assertEquals(9, ring.poll());
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void coalesce_NeverCancelsAClearedPress() {
+        KeyPressRing ring = new KeyPressRing(2, KeyPressRing.Policy.COALESCE);
+
+        assertTrue(ring.offer(5, false));
+        ring.clear();
+        assertTrue(ring.offer(5, false)); // a new press, since the pending one was dropped
+        assertTrue(ring.offer(6, false));
+        assertEquals(5, ring.poll());
+        assertEquals(6, ring.poll());
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void awaitRoom_ParksAProducerUntilAPressIsTaken() throws InterruptedException {
+        KeyPressRing ring = new KeyPressRing(1, KeyPressRing.Policy.DROP_NEWEST);
+        assertTrue(ring.offer(1, true));
+        assertFalse(ring.offer(2, true));
+
+        Thread producer = new Thread(() -> {
+            while (!ring.offer(2, true))
+                ring.awaitRoom();
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive()); // parked, since the ring is still full
+
+        assertEquals(1, ring.poll());
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertEquals(2, ring.poll());
+    }
+
+    @Test
+    void block_NeverBlocksAProducerThatMayNotBlock() {
+        KeyPressRing ring = new KeyPressRing(1, KeyPressRing.Policy.BLOCK);
+
+        assertTrue(ring.offer(1, false));
+        assertFalse(ring.offer(2, false));
+        ring.close();
+        assertFalse(ring.offer(2, true));
+    }
+
+    @Test
+    void block_DeliversEveryPressToAParkingConsumer() throws InterruptedException {
+        KeyPressRing ring = new KeyPressRing(3, KeyPressRing.Policy.BLOCK);
+        int presses = 200_000;
+        AtomicLong sum = new AtomicLong();
+
+        Thread consumer = new Thread(() -> {
+            for (int taken = 0; taken < presses; ) {
+                int slot = ring.poll();
+                if (slot < 0) {
+                    ring.await();
+                } else {
+                    sum.addAndGet(slot);
+                    ++taken;
+                }
+            }
+        });
+        consumer.start();
+        long expected = 0;
+        for (int i = 0; i < presses; ++i) {
+            assertTrue(ring.offer(i % 12, true));
+            expected += i % 12;
+        }
+        consumer.join(10_000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(expected, sum.get());
+    }
+}
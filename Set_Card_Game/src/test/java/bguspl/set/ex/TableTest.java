@@ -11,7 +11,9 @@ import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 class TableTest {
 
@@ -95,6 +97,46 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void placeToken_CapturesTheSlotVersion() {
+        fillSomeSlots();
+        table.placeCard(8, 3);
+        table.placeToken(0, 1);
+        table.placeToken(0, 3);
+
+        assertArrayEquals(new long[]{table.slotVersion(1), table.slotVersion(3)},
+                table.getTokensVersions(0, new int[]{1, 3}));
+    }
+
+    @Test
+    void removeCard_MakesTokenVersionsStale() {
+        fillSomeSlots();
+        table.placeToken(0, 1);
+        long[] versions = table.getTokensVersions(0, new int[]{1});
+        assertEquals(table.slotVersion(1), versions[0]);
+
+        table.removeCard(1);
+        assertNotEquals(table.slotVersion(1), versions[0]);
+
+        table.placeCard(3, 1);
+        assertNotEquals(table.slotVersion(1), versions[0]);
+    }
+
+    @Test
+    void getTokensSlots_SkipsATokenRemovedWithItsCard() {
+        fillAllSlots();
+        table.placeToken(0, 0);
+        table.placeToken(0, 2);
+        table.placeToken(0, 3);
+        assertArrayEquals(new int[]{0, 2, 3}, table.getTokensSlots(0));
+
+        table.removeCard(0);
+        int[] slots = table.getTokensSlots(0);
+
+        assertArrayEquals(new int[]{2, 3}, slots); // slot 0 is not claimed, even though its old token version is kept
+        assertArrayEquals(new long[]{table.slotVersion(2), table.slotVersion(3)}, table.getTokensVersions(0, slots));
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void placeCard(int card, int slot) {}